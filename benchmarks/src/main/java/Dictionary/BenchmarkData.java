@@ -0,0 +1,94 @@
+package Dictionary;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generated dictionaries for the benchmarks. Word i is always the same word, so every benchmark and every run sees
+ * the same dictionary for the same size, and a word can be picked at random without keeping a list of all of them.
+ */
+
+public class BenchmarkData
+{
+    // scrambles the index, for the letters after it
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private BenchmarkData() {}
+
+    /**
+     * The i-th generated word: 6 to 10 lower-case letters. The first five letters are i in base 26, so words are
+     * distinct for i below 26^5 (about 11.8 million); the rest are derived from i so that word lengths vary.
+     * @param i index of the word
+     * @return the word
+     */
+    public static String word(long i)
+    {
+        StringBuilder word = new StringBuilder();
+        long rest = i;
+        for(int digit = 0; digit < 5; digit++)
+        {
+            word.append((char) ('a' + rest % 26));
+            rest /= 26;
+        }
+        long mixed = i * MULTIPLIER;
+        int length = 6 + (int) ((mixed >>> 62) & 3) + (int) ((mixed >>> 61) & 1);
+        while(word.length() < length)
+        {
+            word.append((char) ('a' + Long.remainderUnsigned(mixed, 26)));
+            mixed = Long.divideUnsigned(mixed, 26);
+        }
+        return word.toString();
+    }
+
+    /**
+     * The meaning given to the i-th word.
+     * @param i index of the word
+     * @return the meaning
+     */
+    public static String meaning(long i)
+    {
+        return "meaning number " + i + " of a generated word";
+    }
+
+    /**
+     * Writes words 0 to size - 1 in the import format (word, meaning, empty line) to a temporary file that is deleted
+     * when the JVM exits.
+     * @param size number of words
+     * @return the file path
+     * @throws IOException if the file cannot be written
+     */
+    public static Path importFile(int size) throws IOException
+    {
+        Path file = Files.createTempFile("dictionary-" + size, ".txt");
+        file.toFile().deleteOnExit();
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            for(int i = 0; i < size; i++)
+            {
+                out.write(word(i));
+                out.write('\n');
+                out.write(meaning(i));
+                out.write("\n\n");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * A dictionary of words 0 to size - 1, loaded with the bulk importer.
+     * @param size number of words
+     * @param config the features to enable
+     * @return the dictionary
+     * @throws IOException if the import file cannot be written
+     */
+    public static DictionaryLogic dictionary(int size, DictionaryConfig config) throws IOException
+    {
+        Path file = importFile(size);
+        DictionaryLogic logic = new DictionaryLogic(config);
+        logic.bulkImportFileToDict(file.toString(), percent -> {});
+        Files.delete(file);
+        return logic;
+    }
+}
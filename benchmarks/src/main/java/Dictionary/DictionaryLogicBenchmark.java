@@ -0,0 +1,162 @@
+package Dictionary;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the searches and edits on a DictionaryLogic of each size, with the GUI's configuration.
+ * Queries are drawn at random from the generated words, so lookups don't keep hitting the same cache lines. They are
+ * generated before the trial and cycled through, so building a query isn't part of what is measured:
+ * - findWord looks up an existing word (hit) or a word that isn't in the dictionary (miss).
+ * - findWordByFreq looks up a short query (2 letters, contained in many words) or a long one (6 letters, contained
+ *   in one or a few), which are the two ends of FIND's cost.
+ * - addWord adds words that aren't in the dictionary yet; they are removed again after every iteration, so the
+ *   dictionary stays the same size.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Benchmark)
+public class DictionaryLogicBenchmark
+{
+    // the GUI's indexes take about 1.7 KB per word, so 10 million words wouldn't fit in the heap
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private DictionaryLogic logic;
+
+    @Setup(Level.Trial)
+    public void loadDictionary() throws IOException
+    {
+        logic = BenchmarkData.dictionary(size, new DictionaryConfig().setCompletionListSize(5)
+                .setFuzzyDistance(2));
+    }
+
+    /**
+     * Per thread queries, generated up front so that a measured call only has to pick the next one.
+     */
+    @State(Scope.Thread)
+    public static class Queries
+    {
+        // a power of two, so the next query is picked with a mask; enough that they don't all stay in cache
+        private static final int COUNT = 1 << 16;
+
+        private final String[] existingWords = new String[COUNT];
+        private final String[] missingWords = new String[COUNT];
+        private final String[] shortSubstrings = new String[COUNT];
+        private final String[] longSubstrings = new String[COUNT];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void generate(DictionaryLogicBenchmark benchmark)
+        {
+            SplittableRandom random = new SplittableRandom(42);
+            for(int i = 0; i < COUNT; i++)
+            {
+                existingWords[i] = BenchmarkData.word(random.nextInt(benchmark.size));
+                // every generated word has at most 10 letters
+                missingWords[i] = BenchmarkData.word(random.nextInt(benchmark.size)) + "zzzzzz";
+                shortSubstrings[i] = substring(BenchmarkData.word(random.nextInt(benchmark.size)), 2, random);
+                longSubstrings[i] = substring(BenchmarkData.word(random.nextInt(benchmark.size)), 6, random);
+            }
+        }
+
+        private static String substring(String word, int length, SplittableRandom random)
+        {
+            int start = random.nextInt(word.length() - length + 1);
+            return word.substring(start, start + length);
+        }
+
+        private int nextIndex()
+        {
+            return next++ & (COUNT - 1);
+        }
+
+        String existingWord()
+        {
+            return existingWords[nextIndex()];
+        }
+
+        String missingWord()
+        {
+            return missingWords[nextIndex()];
+        }
+
+        String shortSubstring()
+        {
+            return shortSubstrings[nextIndex()];
+        }
+
+        String longSubstring()
+        {
+            return longSubstrings[nextIndex()];
+        }
+    }
+
+    /**
+     * Words added by the addWord benchmark in the current iteration, removed again when it ends.
+     */
+    @State(Scope.Thread)
+    public static class Additions
+    {
+        private final List<String> added = new ArrayList<String>();
+        private long next;
+
+        String nextWord()
+        {
+            // generated words are all lower case, so these are never in the dictionary already
+            String word = "Added" + BenchmarkData.word(next++);
+            added.add(word);
+            return word;
+        }
+
+        @TearDown(Level.Iteration)
+        public void removeAdded(DictionaryLogicBenchmark benchmark)
+        {
+            for(String word : added)
+                benchmark.logic.removeWord(word);
+            added.clear();
+        }
+    }
+
+    @Benchmark
+    public WordEntry findWordHit(Queries queries)
+    {
+        return logic.findWord(queries.existingWord());
+    }
+
+    @Benchmark
+    public WordEntry findWordMiss(Queries queries)
+    {
+        return logic.findWord(queries.missingWord());
+    }
+
+    @Benchmark
+    public List<WordEntry> findWordByFreqShort(Queries queries)
+    {
+        return logic.findWordByFreq(queries.shortSubstring());
+    }
+
+    @Benchmark
+    public List<WordEntry> findWordByFreqLong(Queries queries)
+    {
+        return logic.findWordByFreq(queries.longSubstring());
+    }
+
+    @Benchmark
+    public void addWord(Additions additions, Blackhole blackhole)
+    {
+        String word = additions.nextWord();
+        logic.addWord(word, "an added word");
+        blackhole.consume(word);
+    }
+}
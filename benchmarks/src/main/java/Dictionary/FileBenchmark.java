@@ -0,0 +1,68 @@
+package Dictionary;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of importing and exporting whole dictionaries. Each is a single long operation, so they are timed one
+ * at a time (single shot) rather than averaged over many calls.
+ */
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Benchmark)
+public class FileBenchmark
+{
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Path importFile;
+    private Path exportFile;
+    private DictionaryLogic loaded;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException
+    {
+        importFile = BenchmarkData.importFile(size);
+        exportFile = Files.createTempFile("dictionary-export", ".txt");
+        exportFile.toFile().deleteOnExit();
+        loaded = new DictionaryLogic();
+        loaded.bulkImportFileToDict(importFile.toString(), percent -> {});
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException
+    {
+        Files.deleteIfExists(importFile);
+        Files.deleteIfExists(exportFile);
+    }
+
+    @Benchmark
+    public DictionaryLogic importFileToDict()
+    {
+        DictionaryLogic logic = new DictionaryLogic();
+        logic.importFileToDict(importFile.toString());
+        return logic;
+    }
+
+    @Benchmark
+    public DictionaryLogic bulkImportFileToDict()
+    {
+        DictionaryLogic logic = new DictionaryLogic();
+        logic.bulkImportFileToDict(importFile.toString(), percent -> {});
+        return logic;
+    }
+
+    @Benchmark
+    public void exportFileFromDict()
+    {
+        loaded.exportFileFromDict(exportFile.toString());
+    }
+}
@@ -0,0 +1,50 @@
+package Dictionary;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of pushing searches onto the search history, with the GUI's capacity and a much larger one. Half of the
+ * pushes repeat a word that is already in the history (which moves it to the top), half push a new one (which drops
+ * the oldest once the history is full).
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchHistoryStackBenchmark
+{
+    private static final int WORDS = 1 << 16;
+
+    @Param({"10", "1000", "100000"})
+    public int capacity;
+
+    private String[] words;
+    private SearchHistoryStack<String> history;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fillHistory()
+    {
+        words = new String[WORDS];
+        for(int i = 0; i < WORDS; i++)
+            words[i] = BenchmarkData.word(i);
+        history = new SearchHistoryStack<String>(capacity);
+        for(int i = 0; i < capacity; i++)
+            history.push(words[i & (WORDS - 1)]);
+    }
+
+    @Benchmark
+    public SearchHistoryStack<String> push()
+    {
+        int i = next++;
+        // odd pushes repeat one of the last few words pushed, even pushes bring in a new one
+        String word = ((i & 1) == 1) ? words[(i - 3) & (WORDS - 1)] : words[i & (WORDS - 1)];
+        history.push(word);
+        return history;
+    }
+}
@@ -0,0 +1,64 @@
+package Dictionary;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of creating WordEntries (which validates the word) and of the frequency order used by the rankings and
+ * the export.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WordEntryBenchmark
+{
+    private static final int WORDS = 1024;
+
+    private String[] words;
+    private WordEntry[] entries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generateWords()
+    {
+        words = new String[WORDS];
+        entries = new WordEntry[WORDS];
+        for(int i = 0; i < WORDS; i++)
+        {
+            words[i] = BenchmarkData.word(i);
+            entries[i] = new WordEntry(words[i], BenchmarkData.meaning(i), i % 7);
+        }
+    }
+
+    @Benchmark
+    public WordEntry construct()
+    {
+        int i = next++ & (WORDS - 1);
+        return new WordEntry(words[i], "a meaning");
+    }
+
+    @Benchmark
+    public boolean isValidWord()
+    {
+        return WordEntry.isValidWord(words[next++ & (WORDS - 1)]);
+    }
+
+    @Benchmark
+    public boolean isValidWordRejected()
+    {
+        // invalid at the last letter, so the whole word is checked
+        return WordEntry.isValidWord(words[next++ & (WORDS - 1)] + "1");
+    }
+
+    @Benchmark
+    public int compareTo()
+    {
+        int i = next++ & (WORDS - 1);
+        return entries[i].compareTo(entries[(i + 1) & (WORDS - 1)]);
+    }
+}
@@ -0,0 +1,92 @@
+package Dictionary;
+
+/**
+ * The outcome of each item of a batch call (DictionaryLogic.addWords or removeWords), in the order the items were
+ * given. Failed items are reported here rather than thrown, so one bad item neither stops the rest of the batch nor
+ * costs an exception.
+ */
+
+public class BatchResult
+{
+    /**
+     * What happened to one item.
+     */
+    public enum Status
+    {
+        OK,
+        // addWords: the word was already in the dictionary (or earlier in the batch)
+        DUPLICATED,
+        // removeWords: the word was not in the dictionary
+        NOT_FOUND,
+        // addWords: the word is not in valid syntax
+        INVALID
+    }
+
+    private final String[] words;
+    private final Status[] statuses;
+    private int failures;
+
+    /**
+     * @param words the words of the batch, in order
+     */
+    BatchResult(String[] words)
+    {
+        this.words = words;
+        this.statuses = new Status[words.length];
+    }
+
+    void set(int item, Status status)
+    {
+        statuses[item] = status;
+        if(status != Status.OK)
+            failures++;
+    }
+
+    public int size()
+    {
+        return statuses.length;
+    }
+
+    /**
+     * @param item index of the item in the batch
+     * @return what happened to it
+     */
+    public Status getStatus(int item)
+    {
+        return statuses[item];
+    }
+
+    public boolean isOk(int item)
+    {
+        return statuses[item] == Status.OK;
+    }
+
+    /**
+     * @return the number of items that failed
+     */
+    public int getFailureCount()
+    {
+        return failures;
+    }
+
+    /**
+     * The error the single-word call (addWord or removeWord) would have thrown for an item, e.g. to report why it
+     * failed. It is created on demand, so a batch that succeeds creates no exceptions.
+     * @param item index of the item in the batch
+     * @return the error, or null if the item succeeded
+     */
+    public RuntimeException getError(int item)
+    {
+        switch(statuses[item])
+        {
+            case DUPLICATED:
+                return new WordDuplicatedError(words[item]);
+            case NOT_FOUND:
+                return new WordNotFoundError(words[item]);
+            case INVALID:
+                return new InvalidWordError(words[item]);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package Dictionary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reads an import file (word, meaning and a separator line per entry, the format read by
+ * DictionaryLogic.importFileToDict) using all cores. The file is memory-mapped and cut into chunks at line breaks.
+ * The line breaks of every chunk are counted in parallel, which gives the line number each chunk starts at and
+ * therefore where its first entry starts (entries start every 3 lines). Then every chunk is parsed and its words
+ * validated in parallel. An entry belongs to the chunk its word line starts in, even if its meaning runs into the
+ * next chunk.
+ * Lines end with \n or \r\n, like most text files; a lone \r is not treated as a line break.
+ */
+
+public class BulkImporter
+{
+    public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+    private final int chunkSize;
+
+    public BulkImporter()
+    {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize approximate number of bytes handed to each parallel task
+     */
+    public BulkImporter(int chunkSize)
+    {
+        if(chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parses and validates every entry of an import file.
+     * @param filePath the file path of the input text file
+     * @param progress called with the percentage (0 to 100) of chunks parsed so far, possibly from several threads
+     * @return the entries in file order, with the line numbers of their words and the first invalid word (if any)
+     * @throws FileNotFoundError if the file cannot be read for any reason
+     */
+    public Records read(String filePath, IntConsumer progress) throws FileNotFoundError
+    {
+        try(FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ))
+        {
+            long fileSize = channel.size();
+            long[] starts = chunkStarts(channel, fileSize);
+            int chunks = starts.length - 1;
+
+            // pass 1: line breaks per chunk, turned into the (0 based) line number each chunk starts at
+            List<LineBreaks> breaks = IntStream.range(0, chunks).parallel()
+                    .mapToObj(i -> lineBreaks(channel, starts[i], starts[i + 1])).toList();
+            long[] firstLine = new long[chunks];
+            for(int i = 1; i < chunks; i++)
+                firstLine[i] = firstLine[i - 1] + breaks.get(i - 1).count;
+
+            // the last entry of a chunk may have its meaning on the first line of the next chunk, but on no more
+            long[] stops = new long[chunks];
+            for(int i = 0; i < chunks; i++)
+                stops[i] = (i + 1 < chunks && breaks.get(i + 1).first >= 0) ? breaks.get(i + 1).first + 1 : fileSize;
+
+            // pass 2: parse and validate
+            ProgressCounter counter = new ProgressCounter(chunks, progress);
+            List<Chunk> parsed = IntStream.range(0, chunks).parallel()
+                    .mapToObj(i ->
+                    {
+                        Chunk chunk = parseChunk(channel, starts[i], starts[i + 1], stops[i], firstLine[i]);
+                        counter.chunkDone();
+                        return chunk;
+                    }).toList();
+            counter.finish();
+            return new Records(parsed);
+        }
+        catch(IOException | UncheckedIOException except)
+        {
+            throw new FileNotFoundError();
+        }
+    }
+
+    /**
+     * The parsed content of an import file.
+     */
+    public static class Records
+    {
+        private final WordEntry[] entries;
+        private final long[] lines;
+        private final String invalidWord;
+        private final long invalidLine;
+
+        private Records(List<Chunk> chunks)
+        {
+            int total = 0;
+            for(Chunk chunk : chunks)
+                total += chunk.entries.size();
+            this.entries = new WordEntry[total];
+            this.lines = new long[total];
+
+            int next = 0;
+            String firstInvalid = null;
+            long firstInvalidLine = -1;
+            for(Chunk chunk : chunks)
+            {
+                for(int i = 0; i < chunk.entries.size(); i++)
+                {
+                    entries[next] = chunk.entries.get(i);
+                    lines[next++] = chunk.lines.get(i);
+                }
+                // chunks are in file order, so the first chunk with an invalid word has the first one
+                if(firstInvalid == null && chunk.invalidWord != null)
+                {
+                    firstInvalid = chunk.invalidWord;
+                    firstInvalidLine = chunk.invalidLine;
+                }
+            }
+            this.invalidWord = firstInvalid;
+            this.invalidLine = firstInvalidLine;
+        }
+
+        public int size()
+        {
+            return entries.length;
+        }
+
+        public WordEntry entry(int index)
+        {
+            return entries[index];
+        }
+
+        /**
+         * @param index position of the entry
+         * @return the 1 based line number of the entry's word in the file
+         */
+        public long line(int index)
+        {
+            return lines[index];
+        }
+
+        /**
+         * @return the first invalid word in the file, or null if every word is valid. Entries on later lines may be
+         * incomplete and should not be imported.
+         */
+        public String getInvalidWord()
+        {
+            return invalidWord;
+        }
+
+        /**
+         * @return the 1 based line number of getInvalidWord(), or -1 if every word is valid
+         */
+        public long getInvalidLine()
+        {
+            return invalidLine;
+        }
+    }
+
+    // entries parsed from one chunk; parsing a chunk stops at its first invalid word
+    private static class Chunk
+    {
+        final List<WordEntry> entries = new ArrayList<WordEntry>();
+        final List<Long> lines = new ArrayList<Long>();
+        String invalidWord;
+        long invalidLine;
+    }
+
+    // the number of line breaks in a chunk, and the file position of the first one (-1 if there is none)
+    private static class LineBreaks
+    {
+        final long count;
+        final long first;
+
+        LineBreaks(long count, long first)
+        {
+            this.count = count;
+            this.first = first;
+        }
+    }
+
+    // reports the percentage of chunks done, never going backwards even though chunks finish on many threads
+    private static class ProgressCounter
+    {
+        private final int chunks;
+        private final IntConsumer progress;
+        private int done;
+        private int percent;
+
+        ProgressCounter(int chunks, IntConsumer progress)
+        {
+            this.chunks = chunks;
+            this.progress = progress;
+            progress.accept(0);
+        }
+
+        synchronized void chunkDone()
+        {
+            int newPercent = (int) (100L * ++done / Math.max(1, chunks));
+            if(newPercent != percent)
+                progress.accept(percent = newPercent);
+        }
+
+        synchronized void finish()
+        {
+            if(percent != 100)
+                progress.accept(percent = 100);
+        }
+    }
+
+    /*
+     * Chunk boundaries: roughly every chunkSize bytes, moved forward to just after the next line break so that every
+     * chunk starts at the beginning of a line. The last element is the file size.
+     */
+    private long[] chunkStarts(FileChannel channel, long fileSize) throws IOException
+    {
+        List<Long> starts = new ArrayList<Long>();
+        starts.add(0L);
+        long target = chunkSize;
+        while(target < fileSize)
+        {
+            MappedByteBuffer buffer = map(channel, fileSize, target);
+            int newline = indexOfNewline(buffer, 0);
+            if(newline < 0)
+                break;
+            long start = target + newline + 1;
+            if(start >= fileSize)
+                break;
+            starts.add(start);
+            target = start + chunkSize;
+        }
+        starts.add(fileSize);
+
+        long[] result = new long[starts.size()];
+        for(int i = 0; i < result.length; i++)
+            result[i] = starts.get(i);
+        return result;
+    }
+
+    private static LineBreaks lineBreaks(FileChannel channel, long start, long end)
+    {
+        try
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            long count = 0;
+            long first = -1;
+            for(int i = 0; i < buffer.limit(); i++)
+            {
+                if(buffer.get(i) == '\n')
+                {
+                    if(count++ == 0)
+                        first = start + i;
+                }
+            }
+            return new LineBreaks(count, first);
+        }
+        catch(IOException except)
+        {
+            // checked exceptions can't leave the lambdas of the parallel streams
+            throw new UncheckedIOException(except);
+        }
+    }
+
+    /*
+     * Parses the entries whose word line starts in [start, end), reading no further than stop (the end of the line
+     * after the chunk). firstLine is the 0 based line number at start, so lines up to the next multiple of 3 belong to
+     * an entry of the previous chunk and are skipped.
+     */
+    private static Chunk parseChunk(FileChannel channel, long start, long end, long stop, long firstLine)
+    {
+        Chunk chunk = new Chunk();
+        MappedByteBuffer buffer;
+        try
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(stop - start, Integer.MAX_VALUE));
+        }
+        catch(IOException except)
+        {
+            throw new UncheckedIOException(except);
+        }
+
+        int chunkLength = (int) (end - start);
+        int pos = 0;
+        long line = firstLine;
+        while(line % 3 != 0 && pos < chunkLength)
+        {
+            pos = nextLineStart(buffer, pos);
+            line++;
+        }
+
+        while(pos < chunkLength)
+        {
+            int wordEnd = lineEnd(buffer, pos);
+            int meaningStart = wordEnd + 1;
+            // like BufferedReader.readLine, an entry needs both its word and meaning line to exist
+            if(wordEnd >= buffer.limit())
+                break;
+            if(meaningStart >= buffer.limit())
+                break;
+            int meaningEnd = lineEnd(buffer, meaningStart);
+
+            int wordLength = trimmedLength(buffer, pos, wordEnd);
+            if(!isValidWord(buffer, pos, wordLength))
+            {
+                chunk.invalidWord = decode(buffer, pos, wordLength);
+                chunk.invalidLine = line + 1;
+                break;
+            }
+            // the word was checked just above
+            String word = decode(buffer, pos, wordLength);
+            String meaning = decode(buffer, meaningStart, trimmedLength(buffer, meaningStart, meaningEnd));
+            chunk.entries.add(WordEntry.trusted(word, meaning, 0));
+            chunk.lines.add(line + 1);
+
+            // skip the separator line after the meaning
+            pos = (meaningEnd + 1 < buffer.limit()) ? nextLineStart(buffer, meaningEnd + 1) : buffer.limit();
+            line += 3;
+        }
+        return chunk;
+    }
+
+    // maps from position to the end of the file, or as much of it as a single mapping allows
+    private static MappedByteBuffer map(FileChannel channel, long fileSize, long position) throws IOException
+    {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(fileSize - position, Integer.MAX_VALUE));
+    }
+
+    private static int indexOfNewline(MappedByteBuffer buffer, int from)
+    {
+        for(int i = from; i < buffer.limit(); i++)
+            if(buffer.get(i) == '\n')
+                return i;
+        return -1;
+    }
+
+    // position of the \n ending the line that starts at from, or the buffer limit for a last line without one
+    private static int lineEnd(MappedByteBuffer buffer, int from)
+    {
+        int newline = indexOfNewline(buffer, from);
+        return (newline < 0) ? buffer.limit() : newline;
+    }
+
+    private static int nextLineStart(MappedByteBuffer buffer, int from)
+    {
+        return Math.min(lineEnd(buffer, from) + 1, buffer.limit());
+    }
+
+    // length of the line without a trailing \r
+    private static int trimmedLength(MappedByteBuffer buffer, int from, int lineEnd)
+    {
+        return (lineEnd > from && buffer.get(lineEnd - 1) == '\r') ? lineEnd - 1 - from : lineEnd - from;
+    }
+
+    // the same check as WordEntry.isValidWord, done on the raw bytes
+    private static boolean isValidWord(MappedByteBuffer buffer, int from, int length)
+    {
+        if(length == 0)
+            return false;
+        for(int i = from; i < from + length; i++)
+        {
+            byte b = buffer.get(i);
+            if(!((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')))
+                return false;
+        }
+        return true;
+    }
+
+    private static String decode(MappedByteBuffer buffer, int from, int length)
+    {
+        byte[] bytes = new byte[length];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
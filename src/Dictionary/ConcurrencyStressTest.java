@@ -0,0 +1,126 @@
+package Dictionary;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Multithreaded stress test for DictionaryLogic. Searcher threads hammer a fixed set of words with FIND while writer
+ * threads keep adding, renaming and removing other words. Afterwards, no search hit may have been lost and the
+ * substring index must agree with a plain scan of the dictionary.
+ */
+public class ConcurrencyStressTest
+{
+    private static final int SEARCHERS = 8;
+    private static final int WRITERS = 4;
+    private static final int SEARCHES_PER_THREAD = 20000;
+    private static final int WRITES_PER_THREAD = 20000;
+
+    public static void main(String[] args) throws Exception
+    {
+        run("Plain", new DictionaryLogic());
+        run("Ranked lists", new DictionaryLogic(new DictionaryConfig().setRankedListSize(3)));
+    }
+
+    private static void run(String name, DictionaryLogic logic) throws Exception
+    {
+        // stable words are upper case and the churned words lower case, so a FIND for a whole stable word can only
+        // ever match (and increment) that word
+        String[] stable = new String[50];
+        for(int i = 0; i < stable.length; i++)
+        {
+            stable[i] = "STABLE" + (char) ('A' + i % 26) + (char) ('A' + i / 26);
+            logic.addWord(stable[i], "stable word " + i);
+        }
+        AtomicIntegerArray expectedHits = new AtomicIntegerArray(stable.length);
+
+        ExecutorService pool = Executors.newFixedThreadPool(SEARCHERS + WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+        for(int t = 0; t < SEARCHERS; t++)
+        {
+            final int seed = t;
+            tasks.add(pool.submit(() ->
+            {
+                Random random = new Random(seed);
+                start.await();
+                for(int i = 0; i < SEARCHES_PER_THREAD; i++)
+                {
+                    int index = random.nextInt(stable.length);
+                    if(logic.findWordByFreq(stable[index]).size() != 1 || logic.findWord(stable[index]) == null)
+                        throw new IllegalStateException("Stable word " + stable[index] + " went missing");
+                    expectedHits.incrementAndGet(index);
+                    // short lower case queries exercise the shared posting lists and ranked lists
+                    logic.findWordByFreq(String.valueOf((char) ('a' + random.nextInt(4))));
+                }
+                return null;
+            }));
+        }
+
+        for(int t = 0; t < WRITERS; t++)
+        {
+            final int seed = 100 + t;
+            tasks.add(pool.submit(() ->
+            {
+                Random random = new Random(seed);
+                start.await();
+                for(int i = 0; i < WRITES_PER_THREAD; i++)
+                {
+                    String word = TestWords.randomWord(random);
+                    try
+                    {
+                        switch(random.nextInt(3))
+                        {
+                            case 0 -> logic.addWord(word, "churn");
+                            case 1 -> logic.removeWord(word);
+                            default -> logic.modifyMeaning(TestWords.randomWord(random), word);
+                        }
+                    }
+                    catch(WordDuplicatedError | WordNotFoundError expected)
+                    {
+                        // collisions between writers are part of the test
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for(Future<?> task : tasks)
+            task.get();
+        pool.shutdown();
+
+        boolean passed = true;
+        for(int i = 0; i < stable.length; i++)
+        {
+            // each FIND for the stable word incremented it once; the final findWord does not increment
+            if(logic.findWord(stable[i]).getFrequencySearched() != expectedHits.get(i))
+            {
+                System.out.println(stable[i] + " has frequency " + logic.findWord(stable[i]).getFrequencySearched() +
+                        " but was found " + expectedHits.get(i) + " times");
+                passed = false;
+            }
+        }
+
+        // the empty query returns everything, which is what the index must agree with
+        List<WordEntry> all = logic.findWordByFreq("", Integer.MAX_VALUE);
+        for(String query : new String[] {"a", "ab", "cd", "abc", "dcba", "bad"})
+        {
+            Set<String> expected = new HashSet<String>();
+            for(WordEntry entry : all)
+                if(entry.getWordName().contains(query))
+                    expected.add(entry.getWordName());
+            Set<String> actual = new HashSet<String>();
+            for(WordEntry entry : logic.findWordByFreq(query, Integer.MAX_VALUE))
+                actual.add(entry.getWordName());
+            if(!expected.equals(actual))
+            {
+                System.out.println("Substring search for " + query + " disagrees with a full scan");
+                passed = false;
+            }
+        }
+
+        System.out.println(name + " concurrency stress test " + (passed ? "passed" : "failed"));
+    }
+}
@@ -0,0 +1,10 @@
+package Dictionary;
+
+/**
+ * This exception is thrown when a file being loaded as a snapshot is not one (wrong magic number), was written by an
+ * unsupported version, or fails its checksum (e.g. it was truncated or modified).
+ */
+public class CorruptSnapshotError extends RuntimeException
+{
+    public CorruptSnapshotError(String reason) { super("The snapshot file is not usable: " + reason); }
+}
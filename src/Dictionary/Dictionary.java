@@ -1,6 +1,8 @@
 package Dictionary;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -8,7 +10,12 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class Dictionary
 {
@@ -37,6 +44,38 @@ public class Dictionary
 
     private final DictionaryLogic logic;
     SearchHistoryStack<String> searchHistory;
+    // what searchHistoryList shows, refilled from searchHistory after each FIND
+    private final DefaultListModel<String> searchHistoryModel;
+
+    /*
+     * FIND, IMPORT and EXPORT run as SwingWorkers so that the window stays responsive; their results are shown from
+     * done(), which Swing runs on the event dispatch thread. findWorker is the latest FIND (older ones are cancelled)
+     * and runningTasks counts workers whose done() hasn't finished yet.
+     */
+    private SwingWorker<FindResult, Void> findWorker;
+    private final AtomicInteger runningTasks;
+
+    /*
+     * As-you-type suggestions for TextNewWord. Every edit restarts suggestionTimer; once the user pauses for
+     * SUGGESTION_DELAY ms, suggestionWorker looks up the completions in the background and they are shown in
+     * suggestionMenu below the field.
+     */
+    private static final int SUGGESTION_COUNT = 5;
+    private static final int SUGGESTION_DELAY = 150;
+    private JPopupMenu suggestionMenu;
+    private Timer suggestionTimer;
+    private SwingWorker<List<WordEntry>, Void> suggestionWorker;
+    private boolean suppressSuggestions;
+
+    // a FIND without an exact match offers up to DID_YOU_MEAN_COUNT words within FUZZY_DISTANCE edits
+    private static final int FUZZY_DISTANCE = 2;
+    private static final int DID_YOU_MEAN_COUNT = 3;
+
+    /**
+     * What a FIND produced: the exact match (or null), the most frequently searched similar words and, if there was
+     * no exact match, the closest spellings ("did you mean").
+     */
+    private record FindResult(WordEntry fullMatch, List<WordEntry> wordByFreq, List<WordEntry> didYouMean) {}
 
     /**
      * Initializes the GUI elements and action listeners.
@@ -44,12 +83,17 @@ public class Dictionary
     public Dictionary()
     {
         resetTextAreaIfKeyed = false;
-        logic = new DictionaryLogic();
+        runningTasks = new AtomicInteger();
+        logic = new DictionaryLogic(new DictionaryConfig().setCompletionListSize(SUGGESTION_COUNT)
+                .setFuzzyDistance(FUZZY_DISTANCE));
         searchHistory = new SearchHistoryStack<String>(10);
+        searchHistoryModel = new DefaultListModel<String>();
+        searchHistoryList.setModel(searchHistoryModel);
 
         // initialize GUI here
         setupTextArea();
         setupClearBtn();
+        setupSuggestions();
 
         setupAddBtn();
         setupFindBtn();
@@ -115,54 +159,97 @@ public class Dictionary
     }
 
     /**
-     * Initializes the export button listener and binds corresponding logic.
-     * @throws FileNotFoundError if the path to export file is invalid or inaccessible in any way
+     * Initializes the export button listener and binds corresponding logic. The export runs in the background and
+     * its progress is shown in the text area. If the path to export file is invalid or inaccessible in any way, the
+     * FileNotFoundError message is shown instead.
      */
-    private void setupExportBtn() throws FileNotFoundError
+    private void setupExportBtn()
     {
         EXPORTButton.addActionListener(new ActionListener()
         {
             @Override
             public void actionPerformed(ActionEvent e)
             {
-                try
-                {
-                    logic.exportFileFromDict(TextFilePath.getText());
-                } catch (FileNotFoundError except)
-                {
-                    printErrorTextArea(except.getMessage());
-                    throw except;
-                }
+                String filePath = TextFilePath.getText();
+                runFileTask("Exporting", "Exported the dictionary to " + filePath + ".",
+                        progress -> logic.exportFileFromDict(filePath, progress));
             }
         });
     }
 
     /**
-     * Initializes the import button listener and binds logic.
-     * @throws FileNotFoundError if the file to be imported cannot be found for any reason
-     * @throws WordDuplicatedError whenever a duplicate word appears in the importing dictionary
-     * @throws InvalidWordError when the word in the importing dictionary is in invalid syntax
+     * Initializes the import button listener and binds logic. The import runs in the background and its progress is
+     * shown in the text area. If the file cannot be found or contains a duplicate or invalid word, the
+     * FileNotFoundError, WordDuplicatedError or InvalidWordError message is shown instead.
      */
-    private void setupImportBtn() throws FileNotFoundError, WordDuplicatedError, InvalidWordError
+    private void setupImportBtn()
     {
         IMPORTButton.addActionListener(new ActionListener()
         {
             @Override
             public void actionPerformed(ActionEvent e)
+            {
+                // this sets the entire dictionary to the imported one (prior entries deleted)
+                String filePath = TextFilePath.getText();
+                runFileTask("Importing", "Imported the dictionary from " + filePath + ".",
+                        progress -> logic.bulkImportFileToDict(filePath, progress));
+            }
+        });
+    }
+
+    /**
+     * Runs an import or export off the event dispatch thread. IMPORT and EXPORT are disabled until it finishes,
+     * the percentage done is shown in the text area while it runs, and the outcome is shown when it ends.
+     * @param verb what is being done, for the progress message (e.g. "Importing")
+     * @param doneMessage message shown if the task succeeds
+     * @param task the import or export, which reports its progress as a percentage
+     */
+    private void runFileTask(String verb, String doneMessage, Consumer<IntConsumer> task)
+    {
+        IMPORTButton.setEnabled(false);
+        EXPORTButton.setEnabled(false);
+        runningTasks.incrementAndGet();
+
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>()
+        {
+            @Override
+            protected Void doInBackground()
+            {
+                // setProgress may be called from any thread; listeners are notified on the EDT
+                task.accept(this::setProgress);
+                return null;
+            }
+
+            @Override
+            protected void done()
             {
                 try
                 {
-                    // this sets the entire dictionary to the imported one (prior entries deleted)
-                    logic.importFileToDict(TextFilePath.getText());
-                    //printTextArea(String.valueOf(logic));
+                    get();
+                    printTextArea(doneMessage);
                 }
-                catch(FileNotFoundError | WordDuplicatedError | InvalidWordError except)
+                catch(ExecutionException except)
                 {
-                    printErrorTextArea(except.getMessage());
-                    throw except;
+                    printErrorTextArea(except.getCause().getMessage());
+                }
+                catch(InterruptedException except)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                finally
+                {
+                    IMPORTButton.setEnabled(true);
+                    EXPORTButton.setEnabled(true);
+                    runningTasks.decrementAndGet();
                 }
             }
+        };
+        worker.addPropertyChangeListener(event ->
+        {
+            if("progress".equals(event.getPropertyName()) && !worker.isDone())
+                printTextArea(verb + "... " + event.getNewValue() + "%");
         });
+        worker.execute();
     }
 
     /**
@@ -215,9 +302,11 @@ public class Dictionary
     }
 
     /**
-     * Initializes the find button listener and binds logic. If the word cannot be found, a message is displayed
-     * on the text area. The three most frequently searched similar (which may includes the same word, if it exists)
-     * is displayed on the corresponding text field. The search history is updated with these results.
+     * Initializes the find button listener and binds logic. The search runs in the background; starting a new FIND
+     * cancels one that is still running, so only the latest results are shown. If the word cannot be found, a
+     * message is displayed on the text area, along with the closest spellings in the dictionary if there are any.
+     * The three most frequently searched similar (which may includes the same word, if it exists) is displayed on
+     * the corresponding text field. The search history is updated with these results.
      */
     private void setupFindBtn()
     {
@@ -226,40 +315,232 @@ public class Dictionary
             @Override
             public void actionPerformed(ActionEvent e)
             {
-                WordEntry fullMatch;
-                List<WordEntry> wordByFreq;
+                // an older search that has already started ranking still finishes (and counts its hits), but its
+                // results are never shown
+                if(findWorker != null)
+                    findWorker.cancel(false);
 
-                fullMatch = logic.findWord(TextNewWord.getText());
-                wordByFreq = logic.findWordByFreq(TextNewWord.getText());
+                String searchWord = TextNewWord.getText();
+                runningTasks.incrementAndGet();
+                findWorker = new SwingWorker<FindResult, Void>()
+                {
+                    @Override
+                    protected FindResult doInBackground()
+                    {
+                        WordEntry fullMatch = logic.findWord(searchWord);
+                        if(isCancelled())
+                            return null;
+                        List<WordEntry> didYouMean = (fullMatch == null) ?
+                                logic.suggestSimilarWords(searchWord, DID_YOU_MEAN_COUNT) : List.of();
+                        return new FindResult(fullMatch, logic.findWordByFreq(searchWord), didYouMean);
+                    }
 
-                if(fullMatch == null)
-                    printTextArea("No Word Matched.");
-                else
-                    printTextArea(fullMatch.getWordMeaning());
+                    @Override
+                    protected void done()
+                    {
+                        try
+                        {
+                            if(!isCancelled())
+                                showFindResult(get());
+                        }
+                        catch(ExecutionException except)
+                        {
+                            printErrorTextArea(except.getCause().getMessage());
+                        }
+                        catch(InterruptedException except)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        finally
+                        {
+                            runningTasks.decrementAndGet();
+                        }
+                    }
+                };
+                findWorker.execute();
+            }
+        });
+    }
 
-                clearFreqWordFields();
-                switch (wordByFreq.size())
+    /**
+     * Shows the outcome of a FIND and adds the words found to the search history. Runs on the event dispatch thread.
+     * @param result the exact match, the most frequently searched similar words and the closest spellings
+     */
+    private void showFindResult(FindResult result)
+    {
+        WordEntry fullMatch = result.fullMatch();
+        List<WordEntry> wordByFreq = result.wordByFreq();
+
+        if(fullMatch == null && result.didYouMean().isEmpty())
+            printTextArea("No Word Matched.");
+        else if(fullMatch == null)
+        {
+            StringBuilder message = new StringBuilder("No Word Matched. Did you mean: ");
+            for(int i = 0; i < result.didYouMean().size(); i++)
+                message.append((i == 0) ? "" : ", ").append(result.didYouMean().get(i).getWordName());
+            printTextArea(message.append("?").toString());
+        }
+        else
+            printTextArea(fullMatch.getWordMeaning());
+
+        clearFreqWordFields();
+        switch (wordByFreq.size())
+        {
+            case 3:
+                TextFreqWord3.setText(wordByFreq.get(2).getWordName());
+            case 2:
+                TextFreqWord2.setText(wordByFreq.get(1).getWordName());
+            case 1:
+                TextFreqWord1.setText(wordByFreq.get(0).getWordName());
+                break;
+        }
+        // update search history list
+        for(WordEntry word : wordByFreq.reversed())
+        {
+            searchHistory.push(word.getWordName());
+        }
+        if(fullMatch != null)
+            searchHistory.push(fullMatch.getWordName());
+        searchHistoryModel.clear();
+        searchHistory.forEach(searchHistoryModel::addElement);
+    }
+
+    /**
+     * Blocks until every FIND, IMPORT and EXPORT started so far has finished and its results are on screen. This is
+     * for driving the GUI from a test thread (see SampleTest), so it must not be called on the event dispatch thread.
+     */
+    void awaitBackgroundTasks()
+    {
+        try
+        {
+            // runningTasks only drops once done() has run, which happens on the EDT
+            while(runningTasks.get() > 0)
+                Thread.sleep(5);
+            EventQueue.invokeAndWait(() -> {});
+        }
+        catch(InterruptedException except)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(InvocationTargetException except)
+        {
+            throw new IllegalStateException(except.getCause());
+        }
+    }
+
+    /**
+     * Sets up the suggestions shown under TextNewWord while typing. Lookups are debounced and run in the background,
+     * and a lookup for text that has changed since is dropped, so fast typing never waits for the dictionary.
+     */
+    private void setupSuggestions()
+    {
+        suggestionMenu = new JPopupMenu();
+        // the menu must not take the focus away from the text field while the user is typing
+        suggestionMenu.setFocusable(false);
+        suggestionTimer = new Timer(SUGGESTION_DELAY, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                lookUpSuggestions();
+            }
+        });
+        suggestionTimer.setRepeats(false);
+
+        TextNewWord.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e)
+            {
+                if(!suppressSuggestions)
+                    suggestionTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                if(!suppressSuggestions)
+                    suggestionTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {}
+        });
+    }
+
+    /**
+     * Starts looking up completions for the current text of TextNewWord, cancelling a lookup still in progress.
+     * Runs on the event dispatch thread.
+     */
+    private void lookUpSuggestions()
+    {
+        if(suggestionWorker != null)
+            suggestionWorker.cancel(false);
+
+        String prefix = TextNewWord.getText();
+        if(!WordEntry.isValidWord(prefix))
+        {
+            suggestionMenu.setVisible(false);
+            return;
+        }
+        suggestionWorker = new SwingWorker<List<WordEntry>, Void>()
+        {
+            @Override
+            protected List<WordEntry> doInBackground()
+            {
+                return logic.completeWord(prefix, SUGGESTION_COUNT);
+            }
+
+            @Override
+            protected void done()
+            {
+                if(isCancelled() || !prefix.equals(TextNewWord.getText()))
+                    return;
+                try
                 {
-                    case 3:
-                        TextFreqWord3.setText(wordByFreq.get(2).getWordName());
-                    case 2:
-                        TextFreqWord2.setText(wordByFreq.get(1).getWordName());
-                    case 1:
-                        TextFreqWord1.setText(wordByFreq.get(0).getWordName());
-                        break;
+                    showSuggestions(get());
                 }
-                // update search history list
-                for(WordEntry word : wordByFreq.reversed())
+                catch(ExecutionException except)
                 {
-                    searchHistory.push(word.getWordName());
+                    // suggestions are only a convenience, so a failed lookup just shows none
+                    suggestionMenu.setVisible(false);
+                }
+                catch(InterruptedException except)
+                {
+                    Thread.currentThread().interrupt();
                 }
-                if(fullMatch != null)
-                    searchHistory.push(fullMatch.getWordName());
-                String[] stuff = searchHistory.stackToArray(String.class);
-                searchHistoryList.setListData(stuff);
-
             }
-        });
+        };
+        suggestionWorker.execute();
+    }
+
+    /**
+     * Shows completions under TextNewWord; picking one puts it into the field. Runs on the event dispatch thread.
+     * @param suggestions the completions, best first
+     */
+    private void showSuggestions(List<WordEntry> suggestions)
+    {
+        suggestionMenu.setVisible(false);
+        suggestionMenu.removeAll();
+        if(suggestions.isEmpty() || !TextNewWord.isShowing())
+            return;
+        for(WordEntry suggestion : suggestions)
+        {
+            JMenuItem item = new JMenuItem(suggestion.getWordName());
+            item.addActionListener(new ActionListener()
+            {
+                @Override
+                public void actionPerformed(ActionEvent e)
+                {
+                    // the picked word is complete, so don't suggest completions of it
+                    suppressSuggestions = true;
+                    TextNewWord.setText(suggestion.getWordName());
+                    suppressSuggestions = false;
+                }
+            });
+            suggestionMenu.add(item);
+        }
+        suggestionMenu.show(TextNewWord, 0, TextNewWord.getHeight());
     }
 
     /**
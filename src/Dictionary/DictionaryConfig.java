@@ -0,0 +1,264 @@
+package Dictionary;
+
+/**
+ * Optional features of DictionaryLogic. The defaults reproduce the plain dictionary, so new DictionaryLogic() and
+ * new DictionaryLogic(new DictionaryConfig()) behave the same. Setters return this so that a configuration can be
+ * written on one line, e.g. new DictionaryConfig().setRankedListSize(3).
+ */
+
+public class DictionaryConfig
+{
+    private int rankedListSize;
+    private int completionListSize;
+    private int fuzzyDistance;
+    private boolean offHeapMeanings;
+    private boolean caseInsensitive;
+    private long popularityHalfLife;
+    private long frequencyDrainInterval;
+    private int queryCacheSize;
+    private long queryCacheStaleness;
+    private boolean scanMode;
+    private int parallelScanThreshold;
+
+    public DictionaryConfig()
+    {
+        this.rankedListSize = 0;
+        this.completionListSize = 0;
+        this.fuzzyDistance = 0;
+        this.offHeapMeanings = false;
+        this.caseInsensitive = false;
+        this.popularityHalfLife = 0;
+        this.frequencyDrainInterval = 0;
+        this.queryCacheSize = 0;
+        this.queryCacheStaleness = 0;
+        this.scanMode = false;
+        this.parallelScanThreshold = 100_000;
+    }
+
+    public int getRankedListSize()
+    {
+        return rankedListSize;
+    }
+
+    /**
+     * Keeps a ranked list of the top rankedListSize words for every indexed substring (see RankedSubstringLists), so
+     * that FIND for short queries needs no ranking step. Up to twice that many are kept, so that removing a word
+     * rarely has to re-rank a whole substring. 0 (the default) turns the lists off.
+     * @param rankedListSize number of words a FIND can be answered with per substring, or 0 to disable
+     * @return this configuration
+     * @throws IllegalArgumentException if rankedListSize is negative
+     */
+    public DictionaryConfig setRankedListSize(int rankedListSize)
+    {
+        if(rankedListSize < 0)
+            throw new IllegalArgumentException("Ranked list size must not be negative: " + rankedListSize);
+        this.rankedListSize = rankedListSize;
+        return this;
+    }
+
+    public int getCompletionListSize()
+    {
+        return completionListSize;
+    }
+
+    /**
+     * Keeps a ranked list of the top completionListSize words for every short prefix (see RankedPrefixLists), so
+     * that DictionaryLogic.completeWord for up to that many words takes time proportional to the number asked for.
+     * 0 (the default) turns the lists off, and completions are then ranked on each call.
+     * @param completionListSize number of words kept per prefix, or 0 to disable
+     * @return this configuration
+     * @throws IllegalArgumentException if completionListSize is negative
+     */
+    public DictionaryConfig setCompletionListSize(int completionListSize)
+    {
+        if(completionListSize < 0)
+            throw new IllegalArgumentException("Completion list size must not be negative: " + completionListSize);
+        this.completionListSize = completionListSize;
+        return this;
+    }
+
+    public int getFuzzyDistance()
+    {
+        return fuzzyDistance;
+    }
+
+    /**
+     * Keeps a deletion index (see FuzzyIndex) so that DictionaryLogic.suggestSimilarWords can find the words within
+     * fuzzyDistance edits of a misspelled word. 1 or 2 is sensible: the index grows quickly with the distance. 0 (the
+     * default) turns suggestions off.
+     * @param fuzzyDistance largest number of edits to allow, or 0 to disable
+     * @return this configuration
+     * @throws IllegalArgumentException if fuzzyDistance is negative
+     */
+    public DictionaryConfig setFuzzyDistance(int fuzzyDistance)
+    {
+        if(fuzzyDistance < 0)
+            throw new IllegalArgumentException("Fuzzy distance must not be negative: " + fuzzyDistance);
+        this.fuzzyDistance = fuzzyDistance;
+        return this;
+    }
+
+    public boolean isOffHeapMeanings()
+    {
+        return offHeapMeanings;
+    }
+
+    /**
+     * Keeps word meanings as UTF-8 in off-heap memory (see MeaningArena) instead of as Strings on the heap. Meanings
+     * are then decoded each time they are read. Off by default.
+     * @param offHeapMeanings true to store meanings off the heap
+     * @return this configuration
+     */
+    public DictionaryConfig setOffHeapMeanings(boolean offHeapMeanings)
+    {
+        this.offHeapMeanings = offHeapMeanings;
+        return this;
+    }
+
+    public boolean isCaseInsensitive()
+    {
+        return caseInsensitive;
+    }
+
+    /**
+     * Makes lookups ignore case, so that "NIKO", "Niko" and "niko" are the same word. Words keep the spelling they
+     * were added with; only the keys they are found by are folded to lower case. Off by default.
+     * @param caseInsensitive true to ignore case in all lookups
+     * @return this configuration
+     */
+    public DictionaryConfig setCaseInsensitive(boolean caseInsensitive)
+    {
+        this.caseInsensitive = caseInsensitive;
+        return this;
+    }
+
+    public long getPopularityHalfLife()
+    {
+        return popularityHalfLife;
+    }
+
+    /**
+     * Ranks words by a time-decayed popularity (see PopularityDecay) rather than their all-time search frequency, in
+     * FIND, completions and the ranked lists: a search counts half as much every half-life. Words loaded with a
+     * frequency count it as searches made when they were loaded. The export is still ordered by all-time frequency.
+     * 0 (the default) turns decay off.
+     * @param popularityHalfLife the half-life in milliseconds, or 0 to disable
+     * @return this configuration
+     * @throws IllegalArgumentException if popularityHalfLife is negative
+     */
+    public DictionaryConfig setPopularityHalfLife(long popularityHalfLife)
+    {
+        if(popularityHalfLife < 0)
+            throw new IllegalArgumentException("Popularity half-life must not be negative: " + popularityHalfLife);
+        this.popularityHalfLife = popularityHalfLife;
+        return this;
+    }
+
+    public long getFrequencyDrainInterval()
+    {
+        return frequencyDrainInterval;
+    }
+
+    /**
+     * Buffers FIND hits and applies them to the search frequencies (and rankings) in the background every interval
+     * (see FrequencyRecorder), rather than in every search. Rankings then lag behind searches by up to about one
+     * interval. This takes the writes to hit entries, cached results and ranked lists out of searches, but searches
+     * still take the dictionary's shared read lock (as does each drain), so they still wait for changes and don't
+     * become lock-free. 0 (the default) applies every hit as it happens.
+     * @param frequencyDrainInterval the interval in milliseconds, or 0 to disable buffering
+     * @return this configuration
+     * @throws IllegalArgumentException if frequencyDrainInterval is negative
+     */
+    public DictionaryConfig setFrequencyDrainInterval(long frequencyDrainInterval)
+    {
+        if(frequencyDrainInterval < 0)
+            throw new IllegalArgumentException("Frequency drain interval must not be negative: " +
+                    frequencyDrainInterval);
+        this.frequencyDrainInterval = frequencyDrainInterval;
+        return this;
+    }
+
+    public int getQueryCacheSize()
+    {
+        return queryCacheSize;
+    }
+
+    /**
+     * Caches the results of FIND substring searches for up to this many queries (see QueryCache), evicting the least
+     * recently used within the cache's stripe of the query (larger caches are split into up to 16 stripes). Adding,
+     * removing or renaming a word invalidates the cached queries it contains, and an import empties the cache. 0 (the
+     * default) disables the cache.
+     * @param queryCacheSize the number of queries to cache, or 0 to disable
+     * @return this configuration
+     * @throws IllegalArgumentException if queryCacheSize is negative
+     */
+    public DictionaryConfig setQueryCacheSize(int queryCacheSize)
+    {
+        if(queryCacheSize < 0)
+            throw new IllegalArgumentException("Query cache size must not be negative: " + queryCacheSize);
+        this.queryCacheSize = queryCacheSize;
+        return this;
+    }
+
+    public long getQueryCacheStaleness()
+    {
+        return queryCacheStaleness;
+    }
+
+    /**
+     * How long a cached result may be reused although search frequencies changed since it was computed, so that it
+     * may rank words by slightly old frequencies. 0 (the default) keeps rankings exact: each search hit moves the hit
+     * word up in the cached results of the queries it contains, and results never expire.
+     * @param queryCacheStaleness the window in milliseconds
+     * @return this configuration
+     * @throws IllegalArgumentException if queryCacheStaleness is negative
+     */
+    public DictionaryConfig setQueryCacheStaleness(long queryCacheStaleness)
+    {
+        if(queryCacheStaleness < 0)
+            throw new IllegalArgumentException("Query cache staleness must not be negative: " + queryCacheStaleness);
+        this.queryCacheStaleness = queryCacheStaleness;
+        return this;
+    }
+
+    public boolean isScanMode()
+    {
+        return scanMode;
+    }
+
+    /**
+     * Drops the substring index, which takes several times the memory of the words themselves, and answers FIND
+     * substring searches by scanning every word instead (in parallel on large dictionaries, see
+     * setParallelScanThreshold). The ranked lists and completion lists are refilled from the index, so they are not
+     * kept in scan mode. False (the default) keeps the index.
+     * @param scanMode whether to scan rather than index
+     * @return this configuration
+     */
+    public DictionaryConfig setScanMode(boolean scanMode)
+    {
+        this.scanMode = scanMode;
+        return this;
+    }
+
+    public int getParallelScanThreshold()
+    {
+        return parallelScanThreshold;
+    }
+
+    /**
+     * In scan mode, the number of words from which a scan is split into chunks that are filtered and ranked on every
+     * core (the common ForkJoinPool), rather than on the searching thread alone. Below it, the cost of handing out
+     * the chunks outweighs what they save. 0 scans every dictionary in parallel; the default is 100,000 words.
+     * @param parallelScanThreshold the number of words from which to scan in parallel
+     * @return this configuration
+     * @throws IllegalArgumentException if parallelScanThreshold is negative
+     */
+    public DictionaryConfig setParallelScanThreshold(int parallelScanThreshold)
+    {
+        if(parallelScanThreshold < 0)
+            throw new IllegalArgumentException("Parallel scan threshold must not be negative: " +
+                    parallelScanThreshold);
+        this.parallelScanThreshold = parallelScanThreshold;
+        return this;
+    }
+}
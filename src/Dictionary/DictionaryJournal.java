@@ -0,0 +1,573 @@
+package Dictionary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the changes made to a dictionary since its last snapshot, so that edits and search
+ * frequencies survive a crash without rewriting the whole dictionary after every change.
+ * Every change is one record, encoded by the thread making the change and appended by a single writer thread. The
+ * writer takes everything queued since its last write and writes it in one go (group commit), so many changes share
+ * one write and one fsync. How often the file is forced to disk is set by the SyncPolicy.
+ * Records hold the complete state of the words they touch after the change rather than the difference (e.g. a word's
+ * new search frequency, not "one more search"), so replaying records on top of a snapshot taken after them ends in the
+ * same state as replaying them on top of one taken before. That is what makes compaction safe: the journal is set
+ * aside, a new snapshot is written and only then is the old journal deleted; a crash in between just replays the old
+ * journal on top of either snapshot.
+ * File format: magic "DICTJRNL" (8 bytes) and format version (int), then records of: body length (int), CRC32 of
+ * the body (int), body: type (byte) followed by its strings, each as a length (int) and UTF-8 bytes. Frequencies are
+ * stored as decimal strings. A record cut short by a crash fails its length or checksum, and replay stops there.
+ */
+
+public class DictionaryJournal
+{
+    /**
+     * When the journal is forced to disk.
+     */
+    public enum SyncPolicy
+    {
+        /**
+         * After every group commit. Methods that change words return only once their change is on disk.
+         */
+        ALWAYS,
+        /**
+         * At most every SYNC_INTERVAL_MILLIS. Changes are written right away, but a crash (of the machine, not just
+         * the program) can lose the last interval.
+         */
+        PERIODIC,
+        /**
+         * Never explicitly; the operating system writes the file back whenever it likes.
+         */
+        NEVER
+    }
+
+    /**
+     * A receiver for the records of a journal being replayed.
+     */
+    public interface Replayer
+    {
+        void add(String word, String meaning);
+
+        void remove(String word);
+
+        void rename(String oldWord, String newWord, String meaning, int frequency);
+
+        void frequency(String word, int frequency);
+
+        void clear();
+    }
+
+    public static final int VERSION = 1;
+    public static final long SYNC_INTERVAL_MILLIS = 1000;
+    /**
+     * Size past which the journal asks for compaction.
+     */
+    public static final long COMPACTION_THRESHOLD = 64 << 20;
+
+    private static final long MAGIC = 0x444943544A524E4CL;
+    private static final int HEADER_SIZE = 8 + 4;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte RENAME = 3;
+    private static final byte FREQUENCY = 4;
+    private static final byte CLEAR = 5;
+
+    private final Path path;
+    private final Path oldPath;
+    private final SyncPolicy policy;
+    private final Runnable compaction;
+    private final Thread writer;
+
+    // guarded by this: the records waiting for the writer, how many records were appended and committed so far
+    private List<byte[]> pending;
+    private long appended;
+    private long committed;
+    private boolean forceRequested;
+    private boolean compactionRequested;
+    private boolean unsynced;
+    private boolean closing;
+    private IOException failure;
+
+    // guarded by fileLock: only the writer and rollOver touch the file
+    private final Object fileLock;
+    private FileChannel channel;
+    private volatile long lastSync;
+
+    /**
+     * Starts a new, empty journal, replacing any file at that path.
+     * @param filePath the file path of the journal; while compacting, the previous journal is kept next to it with
+     *                 ".old" appended
+     * @param policy when to force the journal to disk
+     * @param compaction started on a background thread when the journal grows past COMPACTION_THRESHOLD; it should
+     *                   write a snapshot through rollOver and deleteOld
+     * @throws JournalError if the file cannot be created
+     */
+    public DictionaryJournal(String filePath, SyncPolicy policy, Runnable compaction) throws JournalError
+    {
+        this.path = Path.of(filePath).toAbsolutePath();
+        this.oldPath = oldPathOf(path);
+        this.policy = policy;
+        this.compaction = compaction;
+        this.pending = new ArrayList<byte[]>();
+        this.fileLock = new Object();
+        try
+        {
+            this.channel = create(path);
+        }
+        catch(IOException except)
+        {
+            throw new JournalError(except.getMessage());
+        }
+        this.lastSync = System.currentTimeMillis();
+        this.writer = new Thread(this::writeLoop, "dictionary-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Journals a new word. Like the other record methods, this only queues the record.
+     * @param word the word as it was added
+     * @param meaning its meaning
+     * @return the record's ticket, for awaitCommit
+     */
+    public long add(String word, String meaning)
+    {
+        return append(ADD, word, meaning);
+    }
+
+    public long remove(String word)
+    {
+        return append(REMOVE, word);
+    }
+
+    /**
+     * Journals a word being renamed. The record carries the renamed word's meaning and frequency as well, so that it
+     * doesn't depend on what the old word looked like at replay.
+     * @param oldWord the word's old name
+     * @param newWord its new name
+     * @param meaning its meaning
+     * @param frequency its search frequency
+     * @return the record's ticket, for awaitCommit
+     */
+    public long rename(String oldWord, String newWord, String meaning, int frequency)
+    {
+        return append(RENAME, oldWord, newWord, meaning, Integer.toString(frequency));
+    }
+
+    /**
+     * Journals a word's search frequency. Records for the same word must be appended in the order the frequency
+     * changed, so the caller has to serialize counting and journaling per word.
+     * @param word the word searched
+     * @param frequency its frequency after the search
+     * @return the record's ticket, for awaitCommit
+     */
+    public long frequency(String word, int frequency)
+    {
+        return append(FREQUENCY, word, Integer.toString(frequency));
+    }
+
+    public long clear()
+    {
+        return append(CLEAR);
+    }
+
+    /**
+     * Waits until a record has been written, and with SyncPolicy.ALWAYS also forced to disk. With the other policies
+     * this returns immediately.
+     * @param ticket the ticket of the record
+     * @throws JournalError if the journal can no longer be written
+     */
+    public void awaitCommit(long ticket) throws JournalError
+    {
+        if(policy == SyncPolicy.ALWAYS)
+            waitFor(ticket, false);
+    }
+
+    /**
+     * Writes everything appended so far and forces it to disk, whatever the policy.
+     * @throws JournalError if the journal can no longer be written
+     */
+    public void flush() throws JournalError
+    {
+        long ticket;
+        synchronized(this)
+        {
+            ticket = appended;
+        }
+        waitFor(ticket, true);
+    }
+
+    /**
+     * First step of compaction: moves the journal (after flushing it) to the ".old" file and starts a new, empty
+     * one. No record may be appended while this runs. If an ".old" file is still there from a compaction that
+     * didn't finish, the journal is added to its end instead, so no record is lost.
+     * @throws JournalError if the files cannot be written
+     */
+    public void rollOver() throws JournalError
+    {
+        flush();
+        synchronized(fileLock)
+        {
+            try
+            {
+                channel.close();
+                if(Files.exists(oldPath))
+                {
+                    try(FileChannel old = FileChannel.open(oldPath, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND); FileChannel current = FileChannel.open(path))
+                    {
+                        long position = HEADER_SIZE;
+                        while(position < current.size())
+                            position += current.transferTo(position, current.size() - position, old);
+                        old.force(true);
+                    }
+                    Files.delete(path);
+                }
+                else
+                    Files.move(path, oldPath, StandardCopyOption.ATOMIC_MOVE);
+                channel = create(path);
+            }
+            catch(IOException except)
+            {
+                fail(except);
+                throw new JournalError(except.getMessage());
+            }
+        }
+        synchronized(this)
+        {
+            compactionRequested = false;
+        }
+    }
+
+    /**
+     * Last step of compaction, once a snapshot including everything in the ".old" file has been written: deletes it.
+     * @throws JournalError if the file cannot be deleted
+     */
+    public void deleteOld() throws JournalError
+    {
+        try
+        {
+            Files.deleteIfExists(oldPath);
+        }
+        catch(IOException except)
+        {
+            throw new JournalError(except.getMessage());
+        }
+    }
+
+    /**
+     * Lets a compaction that failed be requested again once the journal grows further.
+     */
+    public synchronized void compactionFailed()
+    {
+        compactionRequested = false;
+    }
+
+    /**
+     * Writes and forces everything appended so far, then stops the writer thread and closes the file.
+     * @throws JournalError if the last records cannot be written
+     */
+    public void close() throws JournalError
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                closing = true;
+                notifyAll();
+            }
+            try
+            {
+                writer.join();
+            }
+            catch(InterruptedException except)
+            {
+                Thread.currentThread().interrupt();
+            }
+            synchronized(fileLock)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch(IOException except)
+                {
+                    // everything was already forced to disk by flush()
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays a journal and the ".old" file next to it (if any, and first, since it is older).
+     * @param filePath the file path of the journal
+     * @param replayer receives the records in order
+     * @throws FileNotFoundError if a journal file exists but cannot be read
+     * @throws CorruptSnapshotError if a journal file has the wrong magic number or version
+     */
+    public static void replay(String filePath, Replayer replayer) throws FileNotFoundError, CorruptSnapshotError
+    {
+        Path journal = Path.of(filePath).toAbsolutePath();
+        replayFile(oldPathOf(journal), replayer);
+        replayFile(journal, replayer);
+    }
+
+    /**
+     * Deletes a journal and its ".old" file, once a snapshot including both has been written.
+     * @param filePath the file path of the journal
+     * @throws FileNotFoundError if the files cannot be deleted
+     */
+    public static void delete(String filePath) throws FileNotFoundError
+    {
+        Path journal = Path.of(filePath).toAbsolutePath();
+        try
+        {
+            Files.deleteIfExists(oldPathOf(journal));
+            Files.deleteIfExists(journal);
+        }
+        catch(IOException except)
+        {
+            throw new FileNotFoundError();
+        }
+    }
+
+    private static Path oldPathOf(Path journal)
+    {
+        return journal.resolveSibling(journal.getFileName() + ".old");
+    }
+
+    private static FileChannel create(Path file) throws IOException
+    {
+        FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putLong(MAGIC).putInt(VERSION).flip();
+        while(header.hasRemaining())
+            created.write(header);
+        created.force(true);
+        return created;
+    }
+
+    // encodes a record on the calling thread and queues it for the writer
+    private long append(byte type, String... fields)
+    {
+        byte[][] encoded = new byte[fields.length][];
+        int bodyLength = 1;
+        for(int i = 0; i < fields.length; i++)
+        {
+            encoded[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+            bodyLength += 4 + encoded[i].length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(8 + bodyLength);
+        record.putInt(bodyLength).putInt(0).put(type);
+        for(byte[] field : encoded)
+            record.putInt(field.length).put(field);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, bodyLength);
+        record.putInt(4, (int) crc.getValue());
+
+        synchronized(this)
+        {
+            if(failure != null)
+                throw new JournalError(failure.getMessage());
+            pending.add(record.array());
+            notifyAll();
+            return ++appended;
+        }
+    }
+
+    private synchronized void waitFor(long ticket, boolean force) throws JournalError
+    {
+        if(force)
+        {
+            forceRequested = true;
+            notifyAll();
+        }
+        try
+        {
+            while((committed < ticket || forceRequested) && failure == null && !closing)
+                wait();
+        }
+        catch(InterruptedException except)
+        {
+            Thread.currentThread().interrupt();
+            throw new JournalError("interrupted while waiting for the journal");
+        }
+        if(failure != null)
+            throw new JournalError(failure.getMessage());
+    }
+
+    private synchronized void fail(IOException except)
+    {
+        failure = except;
+        notifyAll();
+    }
+
+    private void writeLoop()
+    {
+        while(true)
+        {
+            List<byte[]> batch;
+            long batchEnd;
+            boolean force;
+            synchronized(this)
+            {
+                try
+                {
+                    while(pending.isEmpty() && !forceRequested && !closing && !periodicSyncDue())
+                        wait((policy == SyncPolicy.PERIODIC) ? SYNC_INTERVAL_MILLIS : 0);
+                }
+                catch(InterruptedException except)
+                {
+                    return;
+                }
+                if(closing && pending.isEmpty())
+                    return;
+                batch = pending;
+                pending = new ArrayList<byte[]>();
+                batchEnd = appended;
+                force = forceRequested || policy == SyncPolicy.ALWAYS || periodicSyncDue();
+            }
+
+            long size;
+            try
+            {
+                synchronized(fileLock)
+                {
+                    ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+                    for(int i = 0; i < buffers.length; i++)
+                        buffers[i] = ByteBuffer.wrap(batch.get(i));
+                    long remaining = 0;
+                    for(ByteBuffer buffer : buffers)
+                        remaining += buffer.remaining();
+                    while(remaining > 0)
+                        remaining -= channel.write(buffers);
+                    if(force)
+                    {
+                        channel.force(false);
+                        lastSync = System.currentTimeMillis();
+                    }
+                    size = channel.size();
+                }
+            }
+            catch(IOException except)
+            {
+                fail(except);
+                return;
+            }
+
+            boolean compact;
+            synchronized(this)
+            {
+                committed = batchEnd;
+                if(force)
+                    forceRequested = false;
+                unsynced = !force;
+                compact = size > COMPACTION_THRESHOLD && !compactionRequested;
+                if(compact)
+                    compactionRequested = true;
+                notifyAll();
+            }
+            if(compact)
+            {
+                Thread compactor = new Thread(compaction, "dictionary-journal-compaction");
+                compactor.setDaemon(true);
+                compactor.start();
+            }
+        }
+    }
+
+    // needs this lock; true if PERIODIC and there are records written but not synced for a whole interval
+    private boolean periodicSyncDue()
+    {
+        return policy == SyncPolicy.PERIODIC && unsynced
+                && System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS;
+    }
+
+    private static void replayFile(Path file, Replayer replayer) throws FileNotFoundError, CorruptSnapshotError
+    {
+        if(!Files.exists(file))
+            return;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+        {
+            if(in.readLong() != MAGIC)
+                throw new CorruptSnapshotError(file + " is not a journal");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new CorruptSnapshotError("journal version " + version + " is not supported");
+
+            CRC32 crc = new CRC32();
+            while(true)
+            {
+                byte[] body;
+                int checksum;
+                try
+                {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    // a length cut short or overwritten by a crash
+                    if(length <= 0 || length > COMPACTION_THRESHOLD)
+                        return;
+                    body = new byte[length];
+                    in.readFully(body);
+                }
+                catch(EOFException tornRecord)
+                {
+                    return;
+                }
+                crc.reset();
+                crc.update(body);
+                if((int) crc.getValue() != checksum)
+                    return;
+                apply(ByteBuffer.wrap(body), replayer);
+            }
+        }
+        catch(EOFException except)
+        {
+            throw new CorruptSnapshotError(file + " is too short to be a journal");
+        }
+        catch(IOException except)
+        {
+            throw new FileNotFoundError();
+        }
+    }
+
+    private static void apply(ByteBuffer body, Replayer replayer)
+    {
+        byte type = body.get();
+        switch(type)
+        {
+            case ADD:
+                replayer.add(string(body), string(body));
+                break;
+            case REMOVE:
+                replayer.remove(string(body));
+                break;
+            case RENAME:
+                replayer.rename(string(body), string(body), string(body), Integer.parseInt(string(body)));
+                break;
+            case FREQUENCY:
+                replayer.frequency(string(body), Integer.parseInt(string(body)));
+                break;
+            case CLEAR:
+                replayer.clear();
+                break;
+        }
+    }
+
+    private static String string(ByteBuffer body)
+    {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
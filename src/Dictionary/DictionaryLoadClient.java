@@ -0,0 +1,226 @@
+package Dictionary;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for DictionaryServer. It fills the server's dictionary with generated words through batched /add
+ * requests, then keeps a number of virtual threads sending a mix of requests for a while, each thread waiting for
+ * its response before sending the next one:
+ * - 80% GET /find of a word that was added (checked to be found)
+ * - 15% GET /top of two letters
+ * - 5% POST /find of a batch of BATCH_SIZE words
+ * and prints the throughput and the latency percentiles of each kind of request. All requests go through one
+ * HttpClient, which keeps its connections alive between requests.
+ * With no URL given, it starts a DictionaryServer of its own on a free local port, so
+ * "java Dictionary.DictionaryLoadClient" on its own is a complete test of the server.
+ */
+
+public class DictionaryLoadClient
+{
+    public static final int BATCH_SIZE = 16;
+
+    private static final String[] KINDS = {"find", "top", "batch find"};
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String[] words;
+
+    // latencies in nanoseconds, per kind of request, and failed requests
+    private final List<ConcurrentLinkedQueue<Long>> latencies;
+    private final AtomicLong failures;
+
+    /**
+     * @param baseUrl URL of the server, e.g. http://localhost:8080
+     * @param wordCount number of words to add before the load starts
+     */
+    public DictionaryLoadClient(String baseUrl, int wordCount)
+    {
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.words = generateWords(wordCount);
+        this.latencies = new ArrayList<ConcurrentLinkedQueue<Long>>();
+        for(int i = 0; i < KINDS.length; i++)
+            latencies.add(new ConcurrentLinkedQueue<Long>());
+        this.failures = new AtomicLong();
+    }
+
+    /**
+     * Runs the load test.
+     * @param args optional URL of a running server (or "-" to start one here), number of threads (default 64),
+     *             seconds to run (default 10) and words to add (default 100000)
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String url = (args.length > 0) ? args[0] : "-";
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        int wordCount = (args.length > 3) ? Integer.parseInt(args[3]) : 100000;
+
+        DictionaryServer server = null;
+        if(url.equals("-"))
+        {
+            server = new DictionaryServer(new DictionaryLogic(new DictionaryConfig()
+                    .setRankedListSize(DictionaryServer.DEFAULT_K)),
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+        try
+        {
+            DictionaryLoadClient load = new DictionaryLoadClient(url, wordCount);
+            load.addWords();
+            load.run(threads, seconds);
+            load.report(seconds);
+        }
+        finally
+        {
+            if(server != null)
+                server.stop(0);
+        }
+    }
+
+    /**
+     * Adds the generated words, in batches of 1000 per request.
+     * @throws Exception if the server cannot be reached or rejects a word for any reason but already having it
+     */
+    public void addWords() throws Exception
+    {
+        for(int start = 0; start < words.length; start += 1000)
+        {
+            StringBuilder body = new StringBuilder();
+            for(int i = start; i < Math.min(words.length, start + 1000); i++)
+                body.append(words[i]).append("\tmeaning of ").append(words[i]).append('\n');
+            String response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/add"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build());
+            // words left from an earlier run against the same server are fine
+            Optional<String> rejected = response.lines()
+                    .filter(line -> line.startsWith("ERROR") && !line.contains("already exists")).findFirst();
+            if(rejected.isPresent())
+                throw new IllegalStateException("The server rejected an added word: " + rejected.get());
+        }
+    }
+
+    /**
+     * Sends requests from the given number of virtual threads until the time is up.
+     * @param threads number of concurrent clients
+     * @param seconds how long to send requests
+     */
+    public void run(int threads, int seconds) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try(ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(int t = 0; t < threads; t++)
+            {
+                long seed = t;
+                clients.submit(() ->
+                {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    while(System.nanoTime() < end)
+                        sendOne(random);
+                });
+            }
+        }
+    }
+
+    /**
+     * Prints the number of requests of each kind, the throughput and the latency percentiles.
+     * @param seconds how long the load ran
+     */
+    public void report(int seconds)
+    {
+        long total = 0;
+        for(int kind = 0; kind < KINDS.length; kind++)
+        {
+            long[] sorted = latencies.get(kind).stream().mapToLong(Long::longValue).sorted().toArray();
+            total += sorted.length;
+            if(sorted.length == 0)
+                continue;
+            System.out.printf("%-10s %9d requests  p50 %8.1f us  p99 %8.1f us  max %8.1f us%n", KINDS[kind],
+                    sorted.length, percentile(sorted, 50) / 1e3, percentile(sorted, 99) / 1e3,
+                    sorted[sorted.length - 1] / 1e3);
+        }
+        System.out.printf("%d requests in %d s (%.0f per second), %d failed%n", total, seconds,
+                (double) total / seconds, failures.get());
+    }
+
+    private void sendOne(SplittableRandom random)
+    {
+        int choice = random.nextInt(100);
+        int kind = (choice < 80) ? 0 : (choice < 95) ? 1 : 2;
+        HttpRequest request;
+        String expected = null;
+        if(kind == 0)
+        {
+            expected = words[random.nextInt(words.length)];
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/find?word=" + expected)).build();
+        }
+        else if(kind == 1)
+        {
+            String word = words[random.nextInt(words.length)];
+            int start = random.nextInt(word.length() - 1);
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/top?query=" +
+                    word.substring(start, start + 2))).build();
+        }
+        else
+        {
+            StringBuilder body = new StringBuilder();
+            for(int i = 0; i < BATCH_SIZE; i++)
+                body.append(words[random.nextInt(words.length)]).append('\n');
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/find"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+        }
+
+        long start = System.nanoTime();
+        try
+        {
+            String response = send(request);
+            long latency = System.nanoTime() - start;
+            if(expected != null && !response.startsWith(expected + "\t"))
+                failures.incrementAndGet();
+            else
+                latencies.get(kind).add(latency);
+        }
+        catch(Exception except)
+        {
+            failures.incrementAndGet();
+        }
+    }
+
+    private String send(HttpRequest request) throws Exception
+    {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if(response.statusCode() != 200)
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+        return response.body();
+    }
+
+    private static long percentile(long[] sorted, int percent)
+    {
+        return sorted[(int) Math.min(sorted.length - 1, (long) sorted.length * percent / 100)];
+    }
+
+    // distinct random words of 4 to 10 lower-case letters
+    private static String[] generateWords(int count)
+    {
+        SplittableRandom random = new SplittableRandom(1);
+        Set<String> words = new LinkedHashSet<String>();
+        while(words.size() < count)
+        {
+            char[] letters = new char[4 + random.nextInt(7)];
+            for(int i = 0; i < letters.length; i++)
+                letters[i] = (char) ('a' + random.nextInt(26));
+            words.add(new String(letters));
+        }
+        return words.toArray(new String[0]);
+    }
+}
@@ -3,11 +3,35 @@ package Dictionary;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the model/logic behind the Dictionary program. All the functional parts of the program (which
  * contains a GUI, handled in a separate class) are contained in this class.
+ * One DictionaryLogic can be shared between threads:
+ * - findWord and findWords are lock-free and see every add/remove as a single atomic step. While modifyMeaning
+ *   renames a word, there is a brief moment where findWord sees neither the old nor the new name.
+ * - findWordByFreq, exportFileFromDict and saveSnapshot run under a shared read lock, so they see the dictionary
+ *   and its indexes in a consistent state and run in parallel with each other.
+ * - addWord, modifyMeaning, removeWord, removeAllWords, the batches addWords and removeWords, and all imports and
+ *   snapshot loads take the exclusive write lock, so they are applied one at a time and never interleave with a
+ *   running substring search.
+ * - Imports, snapshot loads and removeAllWords build the new dictionary and all of its indexes off to the side,
+ *   without any lock, while every operation carries on against the current one. The new one is then put in place
+ *   under the write lock by swapping a few references, so no operation ever sees a half-loaded dictionary, and an
+ *   import that fails leaves the current one as it was.
+ * - Search frequencies are counted without locking (see WordEntry), so no increment is lost. A ranking computed
+ *   while other threads are searching reflects the frequencies as they were a moment earlier, or up to a drain
+ *   interval earlier if hits are buffered (see FrequencyRecorder).
+ * - With a journal open (see openJournal), changes are journaled while their lock is held, and wait for the journal
+ *   (if its SyncPolicy says so) only after releasing it. Searches journal the new frequency of each word they return,
+ *   which makes concurrent searches for the same word take turns.
  */
 
 public class DictionaryLogic
@@ -16,13 +40,170 @@ public class DictionaryLogic
      * The primary dictionary of the whole program.
      * A hashmap makes the most sense for the case where the name of the relevant object (the word) is directly tied
      * to the value (the meaning - or in this case, the WordEntry which contains all details about the word).
+     * It is a ConcurrentHashMap so that findWord can read it without taking the lock. A bulk import replaces the
+     * whole map (under the write lock), which is why it is volatile.
      */
-    private final Map<String, WordEntry> dictionary;
+    private volatile Map<String, WordEntry> dictionary;
+
+    /*
+     * In case-insensitive mode, the dictionary and its indexes are keyed by the word folded to lower case (see
+     * keyOf), while each WordEntry keeps the spelling it was added with. Keys are folded once when a word is added
+     * and queries once per search, so no search has to fold the words it looks at.
+     */
+    private final boolean caseInsensitive;
+
+    /*
+     * Substring index over the keys of the dictionary, so FIND doesn't have to scan every word. This must be kept in
+     * sync with the dictionary by every method that adds or removes a key.
+     * The indexes are only read and written with the lock held, which is also what makes it safe for an import to
+     * swap them for new ones (see Contents).
+     * In scan mode (see DictionaryConfig.setScanMode) there is no index (null), and FIND scans every key instead.
+     */
+    private SubstringIndex substringIndex;
+    private final boolean scanMode;
+    // the dictionary size from which a scan runs in parallel
+    private final int parallelScanThreshold;
+
+    /*
+     * Optional precomputed top words per indexed substring (null when disabled in the DictionaryConfig). Like the
+     * substring index, this is maintained through insertEntry/deleteEntry and whenever a frequency changes.
+     */
+    private RankedSubstringLists rankedLists;
+
+    /*
+     * Optional precomputed top completions per short prefix (null when disabled in the DictionaryConfig), maintained
+     * the same way as rankedLists.
+     */
+    private RankedSubstringLists prefixLists;
+
+    /*
+     * Optional index of words by their deletes, for "did you mean" suggestions (null when disabled in the
+     * DictionaryConfig). Like the substring index, it is kept in sync by every method that adds or removes a key.
+     */
+    private FuzzyIndex fuzzyIndex;
+
+    // the sizes of the optional indexes above (0 when disabled), for building new ones
+    private final int rankedListSize;
+    private final int completionListSize;
+    private final int fuzzyDistance;
+
+    /*
+     * Optional time decay of popularity (null when disabled in the DictionaryConfig). With it, every FIND hit also
+     * adds to the entry's decayed popularity score, which WordEntry.compareTo ranks by before the all-time frequency.
+     * A hit only ever raises its own entry's score and the scores of other entries stay comparable as time passes,
+     * so the ranked lists stay valid without rescanning anything.
+     */
+    private final PopularityDecay popularityDecay;
+
+    /*
+     * Optional buffer of FIND hits (null when disabled in the DictionaryConfig), drained in the background every
+     * interval by drainSearches, which applies each entry's hits at once. Without it, every hit is applied by the
+     * search that made it.
+     */
+    private final FrequencyRecorder frequencyRecorder;
+
+    /*
+     * Optional cache of substring search results (null when disabled in the DictionaryConfig). Results are looked up
+     * and stored under the read lock, and insertEntry/deleteEntry invalidate them under the write lock, so a result
+     * computed before a change can never be stored after it. applySearches moves each hit word up in the results
+     * that list it, so hits don't invalidate anything.
+     */
+    private final QueryCache queryCache;
+
+    /*
+     * Latency histograms of the public operations (see DictionaryMetrics), which can be switched off at runtime.
+     * Each public operation is timed as a whole, including waiting for the lock and the journal.
+     */
+    private final DictionaryMetrics metrics;
+
+    /*
+     * Optional off-heap storage for meanings (null when disabled in the DictionaryConfig). Every entry in the
+     * dictionary keeps its meaning in this arena; when the whole dictionary is replaced, so is the arena.
+     */
+    private volatile MeaningArena meaningArena;
+
+    /*
+     * Guards the indexes, and makes multistep changes to the dictionary atomic with respect to substring searches.
+     * See the class comment for what each method takes.
+     */
+    private final ReentrantReadWriteLock lock;
+
+    /*
+     * Optional write-ahead journal (null unless openJournal was called), with the snapshot it is replayed on top of.
+     * Every change is journaled while the lock that makes it is held, so the journal has changes in the order they
+     * were made. Instead of journaling every word of an import or snapshot load, a new snapshot is written when it
+     * is done.
+     * checkpointLock makes sure only one snapshot is written at a time, and is always taken before the lock.
+     */
+    private volatile DictionaryJournal journal;
+    private volatile String journalSnapshotPath;
+    private final Object checkpointLock;
 
 
     public DictionaryLogic()
      {
-         this.dictionary = new HashMap<String, WordEntry>();
+         this(new DictionaryConfig());
+     }
+
+    /**
+     * Creates an empty dictionary with the given optional features enabled.
+     * @param config the features to enable
+     */
+    public DictionaryLogic(DictionaryConfig config)
+     {
+         this(config, (config.getPopularityHalfLife() > 0) ?
+                 new PopularityDecay(config.getPopularityHalfLife()) : null);
+     }
+
+    /**
+     * Creates an empty dictionary that scores popularity with a given decay rather than one of its own, so that
+     * several dictionaries (e.g. the shards of a ShardedDictionary) have scores that can be compared.
+     * @param config the features to enable; its popularity half-life is ignored
+     * @param popularityDecay the decay to score popularity with, or null for none
+     */
+    DictionaryLogic(DictionaryConfig config, PopularityDecay popularityDecay)
+     {
+         this.caseInsensitive = config.isCaseInsensitive();
+         this.dictionary = new ConcurrentHashMap<String, WordEntry>();
+         this.scanMode = config.isScanMode();
+         this.parallelScanThreshold = config.getParallelScanThreshold();
+         // both kinds of list are refilled from the substring index, so there are none without it
+         this.rankedListSize = scanMode ? 0 : config.getRankedListSize();
+         this.completionListSize = scanMode ? 0 : config.getCompletionListSize();
+         this.fuzzyDistance = config.getFuzzyDistance();
+         this.substringIndex = scanMode ? null : new SubstringIndex();
+         this.rankedLists = (rankedListSize > 0) ? new RankedSubstringLists(rankedListSize) : null;
+         this.prefixLists = (completionListSize > 0) ? new RankedPrefixLists(completionListSize) : null;
+         this.fuzzyIndex = (fuzzyDistance > 0) ? new FuzzyIndex(fuzzyDistance) : null;
+         this.popularityDecay = popularityDecay;
+         this.meaningArena = config.isOffHeapMeanings() ? new MeaningArena() : null;
+         this.lock = new ReentrantReadWriteLock();
+         this.checkpointLock = new Object();
+         this.metrics = new DictionaryMetrics();
+         this.queryCache = (config.getQueryCacheSize() > 0) ?
+                 new QueryCache(config.getQueryCacheSize(), config.getQueryCacheStaleness()) : null;
+         this.frequencyRecorder = (config.getFrequencyDrainInterval() > 0) ?
+                 new FrequencyRecorder(config.getFrequencyDrainInterval(), this::drainSearches) : null;
+         if(frequencyRecorder != null)
+             frequencyRecorder.start();
+     }
+
+    /**
+     * The cache of substring search results, e.g. to read its hit rate.
+     * @return the cache, or null if DictionaryConfig.setQueryCacheSize wasn't used
+     */
+     public QueryCache getQueryCache()
+     {
+         return queryCache;
+     }
+
+    /**
+     * The metrics of this dictionary's operations, e.g. to dump them, switch them off or register them with JMX.
+     * @return the metrics
+     */
+     public DictionaryMetrics getMetrics()
+     {
+         return metrics;
      }
 
     /**
@@ -33,13 +214,35 @@ public class DictionaryLogic
      */
      public void addWord(String newWord, String meaning) throws WordDuplicatedError
      {
-        WordEntry newEntry = new WordEntry(newWord, meaning);
-        // containsKey uses .equals method of the related object (String in this case)
-        if(this.dictionary.containsKey(newWord))
-            throw new WordDuplicatedError(newWord);
+         long started = metrics.start(DictionaryMetrics.Operation.ADD);
+         try
+         {
+             String key = keyOf(newWord);
+             long ticket;
+             lock.writeLock().lock();
+             try
+             {
+                 // containsKey uses .equals method of the related object (String in this case)
+                 if(this.dictionary.containsKey(key))
+                     throw new WordDuplicatedError(newWord);
 
-        // add to dictionary if the word is in valid syntax and unique
-        dictionary.put(newWord, newEntry);
+                 // add to dictionary if the word is in valid syntax and unique
+                 // (the entry is only created now so that an off-heap meaning isn't stored for a duplicate)
+                 WordEntry newEntry = (meaningArena == null) ? new WordEntry(newWord, meaning) :
+                         WordEntry.offHeap(newWord, meaning, 0, meaningArena);
+                 insertEntry(key, newEntry);
+                 ticket = journaled(current -> current.add(newWord, meaning));
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             awaitJournal(ticket);
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.ADD, started);
+         }
      }
 
     /**
@@ -54,7 +257,9 @@ public class DictionaryLogic
      {
          // try to find the word in the dictionary. if not present, throw WordNotFound
          // so that words by frequency can be attempted (if such words exist)
-         WordEntry matchedWord = dictionary.getOrDefault(searchWord, null);
+         long started = metrics.start(DictionaryMetrics.Operation.FIND);
+         WordEntry matchedWord = dictionary.getOrDefault(keyOf(searchWord), null);
+         metrics.record(DictionaryMetrics.Operation.FIND, started);
          if(matchedWord == null)
              return null;
          //matchedWord.incrementFrequency();
@@ -69,54 +274,224 @@ public class DictionaryLogic
      */
      public List<WordEntry> findWordByFreq(String searchWord)
      {
-         // try to find all words that contain the searchWord for the frequency search
-         // sort this in descending frequency and pick the top 3/2/1, as necessary
-         // if no word (s) that contain the searchWord exist, throws WordNotFoundError
+         return findWordByFreq(searchWord, 3);
+     }
 
-         List<String> containingWords = new ArrayList<String>();
+    /**
+     * Returns the top k most frequently searched words containing the keyword searchWord, in descending frequency
+     * (ties broken alphabetically), or in descending decayed popularity if DictionaryConfig.setPopularityHalfLife is
+     * used. Each returned word has its search frequency incremented. If no word contains searchWord, an empty
+     * WordEntry List is returned.
+     * @param searchWord the keyword to search for in the dictionary
+     * @param k maximum number of words to return
+     * @return List of at most k WordEntries that are the most frequently searched words similar to searchWord.
+     */
+     public List<WordEntry> findWordByFreq(String searchWord, int k)
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.SUBSTRING_SEARCH);
+         String query = keyOf(searchWord);
+         lock.readLock().lock();
+         try
+         {
+             List<WordEntry> result = rank(query, k);
+             for(WordEntry res : result)
+                 recordSearch(res);
+             return result;
+         }
+         finally
+         {
+             lock.readLock().unlock();
+             metrics.record(DictionaryMetrics.Operation.SUBSTRING_SEARCH, started);
+         }
+     }
 
-         // populate containingWords with words containing searchWord (this is the filtered list)
-         for(String word : dictionary.keySet())
-             if(word.contains(searchWord))
-                 containingWords.add(word);
+    /**
+     * Same as findWordByFreq, except that it doesn't count as a search: no frequency changes. ShardedDictionary ranks
+     * each shard with this, and only counts the words that make the overall top k (see countSearch).
+     * @param searchWord the keyword to search for in the dictionary
+     * @param k maximum number of words to return
+     * @return List of at most k WordEntries that are the most frequently searched words similar to searchWord.
+     */
+     List<WordEntry> rankWords(String searchWord, int k)
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.SUBSTRING_SEARCH);
+         String query = keyOf(searchWord);
+         lock.readLock().lock();
+         try
+         {
+             return rank(query, k);
+         }
+         finally
+         {
+             lock.readLock().unlock();
+             metrics.record(DictionaryMetrics.Operation.SUBSTRING_SEARCH, started);
+         }
+     }
 
-         if(containingWords.isEmpty())
-             return new ArrayList<WordEntry>();
+    /**
+     * Counts a FIND hit on an entry that rankWords returned, unless it has left the dictionary since.
+     * @param entry the entry that was returned by a search
+     */
+     void countSearch(WordEntry entry)
+     {
+         lock.readLock().lock();
+         try
+         {
+             if(dictionary.get(keyOf(entry.getWordName())) == entry)
+                 recordSearch(entry);
+         }
+         finally
+         {
+             lock.readLock().unlock();
+         }
+     }
+
+    /**
+     * Finds the top k words containing a query, from the ranked lists, the query cache or by ranking every candidate.
+     * Must be called with at least the read lock held.
+     * @param query the keyword, as a dictionary key
+     * @param k maximum number of words to return
+     * @return List of at most k WordEntries in descending rank
+     */
+     private List<WordEntry> rank(String query, int k)
+     {
+         List<WordEntry> result = null;
+         // short queries may already have their answer ranked, and frequent ones cached
+         if(rankedLists != null && rankedLists.covers(query, k))
+             result = rankedLists.top(query, k);
+         else if(queryCache != null)
+             result = queryCache.get(query, k);
+         if(result != null)
+             return result;
 
-         // sort by descending searched frequency / alphabetize at the same time
-         for(int i = 0; i < containingWords.size() - 1; i++)
+         QueryCache.Computation computation = (queryCache != null) ? queryCache.begin(query) : null;
+         try
          {
-             // invariant: every word after index i must be lower (or equal) in frequency
-             int maxInd = i;
-             for(int j = i + 1; j < containingWords.size(); j++)
+             // keep only the k best candidates rather than sorting all of them (see WordEntry.compareTo())
+             TopKSelector topK;
+             if(substringIndex == null)
+                 topK = scan(query, k);
+             else
              {
-                 WordEntry curr = dictionary.get(containingWords.get(j));
-                 WordEntry max = dictionary.get(containingWords.get(maxInd));
-
-                 // frequency comparison
-                 if(curr.getFrequencySearched() > max.getFrequencySearched())
-                     maxInd = j;
-                 // if frequencies are the same, sort alphabetically (ascending)
-                 else if(curr.getFrequencySearched() == max.getFrequencySearched() &&
-                        (curr.getWordName().compareTo(max.getWordName()) < 0))
-                 {
-                    maxInd = j;
-                 }
+                 // try to find all words that contain the searchWord for the frequency search
+                 // the substring index hands back only the matching words; the empty string is in every word
+                 Collection<String> containingWords = query.isEmpty() ? dictionary.keySet() :
+                         substringIndex.wordsContaining(query);
+                 topK = new TopKSelector(k);
+                 for(String word : containingWords)
+                     topK.offer(dictionary.get(word));
              }
-             // swap elements if necessary
-             String temp = containingWords.get(i);
-             containingWords.set(i, containingWords.get(maxInd));
-             containingWords.set(maxInd, temp);
+             metrics.recordCandidates(topK.offered());
+             result = topK.drainToSortedList();
+             return result;
+         }
+         finally
+         {
+             if(computation != null)
+                 queryCache.finish(computation, k, result);
+         }
+     }
+
+    /**
+     * Returns the top k most frequently searched words starting with prefix, in descending frequency (ties broken
+     * alphabetically), for suggesting words while the user types. Unlike findWordByFreq, this doesn't count as a
+     * search, so no frequency changes. With completion lists enabled (see DictionaryConfig), a short prefix takes
+     * time proportional to k; longer prefixes rank their (few) completions on the spot.
+     * @param prefix the start of a word
+     * @param k maximum number of words to return
+     * @return List of at most k WordEntries starting with prefix
+     */
+     public List<WordEntry> completeWord(String prefix, int k)
+     {
+         String query = keyOf(prefix);
+         lock.readLock().lock();
+         try
+         {
+             if(prefixLists != null && prefixLists.covers(query, k))
+                 return prefixLists.top(query, k);
+
+             // the completions are among the words containing the prefix
+             Collection<String> candidates;
+             if(query.isEmpty() || substringIndex == null)
+                 candidates = dictionary.keySet();
+             else
+                 candidates = substringIndex.wordsContaining(query);
+
+             TopKSelector topK = new TopKSelector(k);
+             for(String word : candidates)
+                 if(word.startsWith(query))
+                     topK.offer(dictionary.get(word));
+             return topK.drainToSortedList();
+         }
+         finally
+         {
+             lock.readLock().unlock();
+         }
+     }
+
+    /**
+     * Suggests words for a word that wasn't found ("did you mean"): the words within the fuzzy distance set in the
+     * DictionaryConfig, closest first and, at the same distance, most frequently searched first (ties broken
+     * alphabetically). The word itself is never suggested. This doesn't count as a search, so no frequency changes.
+     * @param word the word that wasn't found
+     * @param k maximum number of words to return
+     * @return List of at most k similar WordEntries, or an empty list if fuzzy matching is disabled
+     */
+     public List<WordEntry> suggestSimilarWords(String word, int k)
+     {
+         if(fuzzyIndex == null)
+             return new ArrayList<WordEntry>();
+         String query = keyOf(word);
+         lock.readLock().lock();
+         try
+         {
+             // rank the matches at each distance separately, then take the closest ones first
+             TopKSelector[] byDistance = new TopKSelector[fuzzyIndex.getMaxDistance() + 1];
+             for(int distance = 1; distance < byDistance.length; distance++)
+                 byDistance[distance] = new TopKSelector(k);
+             fuzzyIndex.lookup(query, fuzzyIndex.getMaxDistance(), (key, distance) ->
+             {
+                 if(distance > 0)
+                     byDistance[distance].offer(dictionary.get(key));
+             });
+
+             List<WordEntry> result = new ArrayList<WordEntry>(k);
+             for(int distance = 1; distance < byDistance.length && result.size() < k; distance++)
+                 for(WordEntry entry : byDistance[distance].drainToSortedList())
+                     if(result.size() < k)
+                         result.add(entry);
+             return result;
+         }
+         finally
+         {
+             lock.readLock().unlock();
          }
-         int resultSize = Math.min(containingWords.size(), 3);
-         List<WordEntry> result = new ArrayList<WordEntry>();
-         for(int i = 0; i < resultSize; i++)
+     }
+
+    /**
+     * Ranks the words containing a query by looking at every key, for scan mode. A large dictionary is split into
+     * chunks that are filtered and ranked on the common ForkJoinPool, and the top k of each chunk are merged; a small
+     * one (or any, on a single core) is scanned on this thread. Must be called with at least the read lock held,
+     * which keeps the dictionary still for the threads helping with the scan too, since this one waits for them.
+     * @param query the keyword, as a dictionary key
+     * @param k maximum number of words to keep
+     * @return the top k words containing the query, and how many did
+     */
+     private TopKSelector scan(String query, int k)
+     {
+         // with a single worker, splitting only adds the cost of merging
+         if(dictionary.size() < parallelScanThreshold || ForkJoinPool.getCommonPoolParallelism() < 2)
          {
-             WordEntry res = dictionary.get(containingWords.get(i));
-             res.incrementFrequency();
-             result.add(res);
+             TopKSelector topK = new TopKSelector(k);
+             for(Map.Entry<String, WordEntry> entry : dictionary.entrySet())
+                 if(entry.getKey().contains(query))
+                     topK.offer(entry.getValue());
+             return topK;
          }
-         return result;
+         return dictionary.entrySet().parallelStream()
+                 .filter(entry -> entry.getKey().contains(query))
+                 .collect(() -> new TopKSelector(k), (topK, entry) -> topK.offer(entry.getValue()),
+                         TopKSelector::merge);
      }
 
     /**
@@ -128,12 +503,39 @@ public class DictionaryLogic
      */
      public void modifyMeaning(String replacementWord, String oldWord) throws WordNotFoundError, InvalidWordError
      {
-         if(!dictionary.containsKey(oldWord))
-             throw new WordNotFoundError(oldWord);
-         WordEntry newWord = new WordEntry(replacementWord, dictionary.get(oldWord).getWordMeaning(),
-                 dictionary.get(oldWord).getFrequencySearched());
-         dictionary.remove(oldWord);
-         dictionary.put(replacementWord, newWord);
+         long started = metrics.start(DictionaryMetrics.Operation.MODIFY);
+         try
+         {
+             String oldKey = keyOf(oldWord);
+             String replacementKey = keyOf(replacementWord);
+             long ticket;
+             lock.writeLock().lock();
+             try
+             {
+                 if(!dictionary.containsKey(oldKey))
+                     throw new WordNotFoundError(oldWord);
+                 WordEntry newWord = dictionary.get(oldKey).renamed(replacementWord);
+                 // the renamed entry shares an off-heap meaning with the old one, so it isn't released
+                 WordEntry oldEntry = deleteEntry(oldKey);
+                 if(meaningArena != null)
+                     meaningArena.detach(oldEntry);
+                 // an existing entry under the replacement name is overwritten
+                 releaseMeaning(deleteEntry(replacementKey));
+                 insertEntry(replacementKey, newWord);
+                 ticket = journaled(current -> current.rename(oldWord, replacementWord, newWord.getWordMeaning(),
+                         newWord.getFrequencySearched()));
+                 compactMeanings();
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             awaitJournal(ticket);
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.MODIFY, started);
+         }
      }
 
     /**
@@ -143,9 +545,240 @@ public class DictionaryLogic
      */
      public void removeWord(String toRemove) throws WordNotFoundError
      {
-         if(!dictionary.containsKey(toRemove))
-             throw new WordNotFoundError(toRemove);
-         dictionary.remove(toRemove);
+         long started = metrics.start(DictionaryMetrics.Operation.REMOVE);
+         try
+         {
+             String key = keyOf(toRemove);
+             long ticket;
+             lock.writeLock().lock();
+             try
+             {
+                 if(!dictionary.containsKey(key))
+                     throw new WordNotFoundError(toRemove);
+                 releaseMeaning(deleteEntry(key));
+                 ticket = journaled(current -> current.remove(toRemove));
+                 compactMeanings();
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             awaitJournal(ticket);
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.REMOVE, started);
+         }
+     }
+
+    /**
+     * Removes a word and hands back a copy of its entry, with its meaning, frequency and popularity, that doesn't
+     * depend on this dictionary's storage. Used by ShardedDictionary to move a renamed word to another shard (see
+     * putRenamed); journaled as a removal.
+     * @param toRemove word to remove
+     * @return a copy of the removed entry, on the heap
+     * @throws WordNotFoundError if the word is not found in the dictionary
+     */
+     WordEntry takeWord(String toRemove) throws WordNotFoundError
+     {
+         String key = keyOf(toRemove);
+         WordEntry taken;
+         long ticket;
+         lock.writeLock().lock();
+         try
+         {
+             WordEntry removed = deleteEntry(key);
+             if(removed == null)
+                 throw new WordNotFoundError(toRemove);
+             // copied before the off-heap meaning is released
+             taken = new WordEntry(removed.getWordName(), removed.getWordMeaning(), removed.getFrequencySearched());
+             taken.addPopularity(removed.getPopularity());
+             releaseMeaning(removed);
+             ticket = journaled(current -> current.remove(toRemove));
+             compactMeanings();
+         }
+         finally
+         {
+             lock.writeLock().unlock();
+         }
+         awaitJournal(ticket);
+         return taken;
+     }
+
+    /**
+     * Puts a word taken from another dictionary (see takeWord) under a new name, keeping its meaning, frequency and
+     * popularity. As with modifyMeaning, an existing entry under the new name is overwritten.
+     * @param replacementWord new word name
+     * @param taken the entry returned by takeWord
+     * @throws InvalidWordError if the replacement word is not in valid syntax
+     */
+     void putRenamed(String replacementWord, WordEntry taken) throws InvalidWordError
+     {
+         String key = keyOf(replacementWord);
+         String meaning = taken.getWordMeaning();
+         int frequency = taken.getFrequencySearched();
+         long ticket;
+         lock.writeLock().lock();
+         try
+         {
+             WordEntry entry = (meaningArena == null) ? new WordEntry(replacementWord, meaning, frequency) :
+                     WordEntry.offHeap(replacementWord, meaning, frequency, meaningArena);
+             entry.addPopularity(taken.getPopularity());
+             releaseMeaning(deleteEntry(key));
+             insertEntry(key, entry);
+             // replayed as a rename of the word onto itself, which overwrites like the rename did
+             ticket = journaled(current -> current.rename(replacementWord, replacementWord, meaning, frequency));
+             compactMeanings();
+         }
+         finally
+         {
+             lock.writeLock().unlock();
+         }
+         awaitJournal(ticket);
+     }
+
+    /**
+     * Adds many words at once. Unlike calling addWord for each, a word that is invalid or already present is
+     * reported in the result instead of thrown, and the rest of the batch is still added. The words are validated
+     * and their entries built before the write lock is taken, the lock is taken once for the whole batch, and with a
+     * journal open the batch waits for one commit rather than one per word. Adds after the first are seen by other
+     * threads as they are made, not all at once.
+     * @param words words to be added
+     * @param meanings the meaning of each word, in the same order
+     * @return per word, OK, INVALID or DUPLICATED (including a word that appears earlier in the batch)
+     * @throws IllegalArgumentException if there isn't exactly one meaning per word
+     */
+     public BatchResult addWords(List<String> words, List<String> meanings)
+     {
+         if(words.size() != meanings.size())
+             throw new IllegalArgumentException(words.size() + " words but " + meanings.size() + " meanings");
+         long started = metrics.start(DictionaryMetrics.Operation.ADD_BATCH);
+         try
+         {
+             String[] names = words.toArray(new String[0]);
+             String[] keys = new String[names.length];
+             WordEntry[] entries = new WordEntry[names.length];
+             BatchResult result = new BatchResult(names);
+             for(int i = 0; i < names.length; i++)
+             {
+                 if(!WordEntry.isValidWord(names[i]))
+                     result.set(i, BatchResult.Status.INVALID);
+                 else
+                 {
+                     keys[i] = keyOf(names[i]);
+                     // off-heap entries can only be built under the lock, once the word is known to be new.
+                     // either way the word was just checked, so the entry doesn't check it again
+                     if(meaningArena == null)
+                         entries[i] = WordEntry.trusted(names[i], meanings.get(i), 0);
+                 }
+             }
+
+             long ticket = 0;
+             lock.writeLock().lock();
+             try
+             {
+                 reserve(names.length);
+                 for(int i = 0; i < names.length; i++)
+                 {
+                     if(keys[i] == null)
+                         continue;
+                     if(dictionary.containsKey(keys[i]))
+                     {
+                         result.set(i, BatchResult.Status.DUPLICATED);
+                         continue;
+                     }
+                     String word = names[i];
+                     String meaning = meanings.get(i);
+                     WordEntry entry = (entries[i] != null) ? entries[i] :
+                             WordEntry.trustedOffHeap(word, meaning, 0, meaningArena);
+                     insertEntry(keys[i], entry);
+                     ticket = Math.max(ticket, journaled(current -> current.add(word, meaning)));
+                     result.set(i, BatchResult.Status.OK);
+                 }
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             awaitJournal(ticket);
+             return result;
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.ADD_BATCH, started);
+         }
+     }
+
+    /**
+     * Removes many words at once. Unlike calling removeWord for each, a word that is not in the dictionary is
+     * reported in the result instead of thrown, and the rest of the batch is still removed. The write lock is taken
+     * once for the whole batch, and with a journal open the batch waits for one commit rather than one per word.
+     * @param words words to remove
+     * @return per word, OK or NOT_FOUND (including a word that appears earlier in the batch)
+     */
+     public BatchResult removeWords(List<String> words)
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.REMOVE_BATCH);
+         try
+         {
+             String[] names = words.toArray(new String[0]);
+             String[] keys = new String[names.length];
+             for(int i = 0; i < names.length; i++)
+                 keys[i] = keyOf(names[i]);
+             BatchResult result = new BatchResult(names);
+
+             long ticket = 0;
+             lock.writeLock().lock();
+             try
+             {
+                 for(int i = 0; i < names.length; i++)
+                 {
+                     WordEntry removed = deleteEntry(keys[i]);
+                     if(removed == null)
+                     {
+                         result.set(i, BatchResult.Status.NOT_FOUND);
+                         continue;
+                     }
+                     releaseMeaning(removed);
+                     String word = names[i];
+                     ticket = Math.max(ticket, journaled(current -> current.remove(word)));
+                     result.set(i, BatchResult.Status.OK);
+                 }
+                 compactMeanings();
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             awaitJournal(ticket);
+             return result;
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.REMOVE_BATCH, started);
+         }
+     }
+
+    /**
+     * Looks up many words at once, like findWord for each of them.
+     * @param words words to find
+     * @return per word, its WordEntry, or null if it is not in the dictionary
+     */
+     public List<WordEntry> findWords(List<String> words)
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.FIND_BATCH);
+         try
+         {
+             List<WordEntry> found = new ArrayList<WordEntry>(words.size());
+             Map<String, WordEntry> current = dictionary;
+             for(String word : words)
+                 found.add(current.get(keyOf(word)));
+             return found;
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.FIND_BATCH, started);
+         }
      }
 
     /**
@@ -153,69 +786,799 @@ public class DictionaryLogic
      */
     public void removeAllWords()
      {
-         while(!dictionary.isEmpty())
+         // swapped for an empty dictionary in one step, rather than deleting one word at a time; entries still held
+         // elsewhere keep the old arena alive, new ones start from an empty arena
+         Contents empty = new Contents(new ConcurrentHashMap<String, WordEntry>());
+         long ticket;
+         lock.writeLock().lock();
+         try
          {
-             // make sure to use iterator so that we can get subsequent elements even after deleting (iterator
-             // is updated while removing)
-             String key = dictionary.keySet().iterator().next();
-             dictionary.remove(key);
+             install(empty);
+             ticket = journaled(DictionaryJournal::clear);
          }
+         finally
+         {
+             lock.writeLock().unlock();
+         }
+         awaitJournal(ticket);
      }
 
     /**
      * Import an appropriately formatted (word-meaning-newline) text file for the dictionary.
-     * Rather than appending to the dictionary, the dictionary is cleared prior to updating it.
+     * Rather than appending to the dictionary, the dictionary is replaced by the file's words. The new dictionary is
+     * built while the current one keeps serving and put in place in one step, so a bad file leaves the dictionary
+     * as it was. The error reported is the first one in the file, with its line number.
      * @param filePath the file path of the input text file
      * @throws FileNotFoundError if the file cannot be found for any reason
-     * @throws WordDuplicatedError exception from addWord() that must be caught by caller
-     * @throws InvalidWordError exception from addWord() that must be caught by caller
+     * @throws WordDuplicatedError if a word appears twice in the file
+     * @throws InvalidWordError if a word in the file is in invalid syntax
      */
      public void importFileToDict(String filePath) throws FileNotFoundError, WordDuplicatedError, InvalidWordError
      {
-         // first delete everything from current dictionary
-         this.removeAllWords();
+         importFileToDict(filePath, percent -> {});
+     }
+
+    /**
+     * Same as importFileToDict(filePath), but reports how far the import has got.
+     * @param filePath the file path of the input text file
+     * @param progress called with the percentage (0 to 100) of the file read so far, each time it changes
+     * @throws FileNotFoundError if the file cannot be found for any reason
+     * @throws WordDuplicatedError if a word appears twice in the file
+     * @throws InvalidWordError if a word in the file is in invalid syntax
+     */
+     public void importFileToDict(String filePath, IntConsumer progress)
+             throws FileNotFoundError, WordDuplicatedError, InvalidWordError
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.IMPORT);
+         try
+         {
+             replaceContents(readLines(filePath, progress));
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.IMPORT, started);
+         }
+     }
+
+    /**
+     * Reads a file in the import format into a new dictionary, without touching the current one.
+     * @param filePath the file path of the input text file
+     * @param progress called with the percentage (0 to 100) of the file read so far, each time it changes
+     * @return the file's entries, keyed like insertEntry
+     */
+     private Map<String, WordEntry> readLines(String filePath, IntConsumer progress)
+     {
+         // progress is estimated from the characters read so far against the file size
+         long fileSize = Math.max(1, new File(filePath).length());
+         long charsRead = 0;
+         int percent = 0;
+         progress.accept(percent);
 
+         Map<String, WordEntry> imported = new ConcurrentHashMap<String, WordEntry>();
          try(BufferedReader in = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8)))
          {
              // format is word followed by the meaning
              String word, meaning;
+             long line = 1;
 
-             // for now, I assume the importing file is in the correct format. in future case, this
-             // should be error-handled (if word-meaning structure isn't strictly followed, throw error and halt)
              while(((word = in.readLine()) != null) && ((meaning = in.readLine()) != null))
              {
-                 this.addWord(word, meaning);
+                 if(!WordEntry.isValidWord(word))
+                     throw new InvalidWordError(word, line);
+                 if(imported.putIfAbsent(keyOf(word), new WordEntry(word, meaning)) != null)
+                     throw new WordDuplicatedError(word, line);
                  in.readLine();
+                 line += 3;
+
+                 // 3 line breaks per entry
+                 charsRead += word.length() + meaning.length() + 3;
+                 int newPercent = (int) Math.min(100, 100 * charsRead / fileSize);
+                 if(newPercent != percent)
+                     progress.accept(percent = newPercent);
              }
          }
          catch (IOException notFound)
          {
             throw new FileNotFoundError();
          }
+         if(percent != 100)
+             progress.accept(100);
+         return imported;
+     }
+
+    /**
+     * Import a file in the same format as importFileToDict, parsing it on every core (see BulkImporter) rather than
+     * line by line. As with importFileToDict, the whole file is checked before the dictionary is touched, so a bad
+     * file leaves the dictionary as it was, and the error reported is the first one in the file, with its line number.
+     * @param filePath the file path of the input text file
+     * @param progress called with the percentage (0 to 100) of the file parsed so far, possibly from several threads
+     * @throws FileNotFoundError if the file cannot be found for any reason
+     * @throws WordDuplicatedError if a word appears twice in the file
+     * @throws InvalidWordError if a word in the file is in invalid syntax
+     */
+     public void bulkImportFileToDict(String filePath, IntConsumer progress)
+             throws FileNotFoundError, WordDuplicatedError, InvalidWordError
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.IMPORT);
+         try
+         {
+             BulkImporter.Records records = new BulkImporter().read(filePath, progress);
+
+             // the new map is sized up front; duplicates are found while filling it in file order, so whichever of a
+             // duplicate or an invalid word comes first in the file is the one reported
+             Map<String, WordEntry> imported = new ConcurrentHashMap<String, WordEntry>(records.size());
+             for(int i = 0; i < records.size(); i++)
+             {
+                 if(records.getInvalidWord() != null && records.line(i) > records.getInvalidLine())
+                     break;
+                 WordEntry entry = records.entry(i);
+                 if(imported.putIfAbsent(keyOf(entry.getWordName()), entry) != null)
+                     throw new WordDuplicatedError(entry.getWordName(), records.line(i));
+             }
+             if(records.getInvalidWord() != null)
+                 throw new InvalidWordError(records.getInvalidWord(), records.getInvalidLine());
+
+             replaceContents(imported);
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.IMPORT, started);
+         }
+     }
+
+    /**
+     * Replaces the dictionary with entries read elsewhere, the way an import does. Used by ShardedDictionary, which
+     * reads and checks an import file once and hands each shard its part.
+     * @param replacement the new entries, keyed by the word (folded to lower case in case-insensitive mode)
+     */
+     void replaceWith(Map<String, WordEntry> replacement)
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.IMPORT);
+         try
+         {
+             replaceContents(replacement);
+         }
+         finally
+         {
+             metrics.record(DictionaryMetrics.Operation.IMPORT, started);
+         }
+     }
+
+    /**
+     * The lock that exportFileFromDict holds while it reads the entries, for ShardedDictionary to export several
+     * dictionaries as of one moment.
+     * @return the read lock
+     */
+     Lock readLock()
+     {
+         return lock.readLock();
+     }
+
+    /**
+     * The entries of the dictionary, which may only be read while readLock() is held.
+     * @return a live view of the entries
+     */
+     Collection<WordEntry> entries()
+     {
+         return dictionary.values();
+     }
+
+    /**
+     * Saves the dictionary, including search frequencies, as a binary snapshot (see DictionarySnapshot).
+     * @param filePath the file path of the snapshot
+     * @throws FileNotFoundError if the file cannot be written for any reason
+     */
+     public void saveSnapshot(String filePath) throws FileNotFoundError
+     {
+         lock.readLock().lock();
+         try
+         {
+             DictionarySnapshot.write(dictionary.values(), filePath);
+         }
+         finally
+         {
+             lock.readLock().unlock();
+         }
+     }
+
+    /**
+     * Replaces the dictionary with the contents of a binary snapshot written by saveSnapshot. If the snapshot
+     * cannot be loaded, the dictionary is left as it was.
+     * @param filePath the file path of the snapshot
+     * @throws FileNotFoundError if the file cannot be read for any reason
+     * @throws CorruptSnapshotError if the file is not a snapshot of this version or fails its checksum
+     */
+     public void loadSnapshot(String filePath) throws FileNotFoundError, CorruptSnapshotError
+     {
+         WordEntry[] entries = DictionarySnapshot.read(filePath);
+         Map<String, WordEntry> loaded = new ConcurrentHashMap<String, WordEntry>(entries.length);
+         for(WordEntry entry : entries)
+             loaded.put(keyOf(entry.getWordName()), entry);
+         replaceContents(loaded);
+     }
+
+    /**
+     * Loads a binary snapshot if there is a usable one, and otherwise falls back to importing the text format.
+     * @param snapshotPath the file path of the snapshot
+     * @param textPath the file path of a text file in the import format
+     * @throws FileNotFoundError if neither file can be read
+     * @throws WordDuplicatedError if the snapshot is unusable and the text file contains a word twice
+     * @throws InvalidWordError if the snapshot is unusable and the text file contains an invalid word
+     */
+     public void loadSnapshotOrImport(String snapshotPath, String textPath)
+             throws FileNotFoundError, WordDuplicatedError, InvalidWordError
+     {
+         try
+         {
+             loadSnapshot(snapshotPath);
+         }
+         catch(FileNotFoundError | CorruptSnapshotError unusable)
+         {
+             bulkImportFileToDict(textPath, percent -> {});
+         }
+     }
+
+    /**
+     * Starts journaling every change to the dictionary (see DictionaryJournal), so that changes survive a crash
+     * without saving the whole dictionary after each one. If there is a snapshot at snapshotPath, the dictionary is
+     * first replaced by it, with the changes left in the journal from last time replayed on top, which brings it
+     * back to where it was when the program stopped. Then a new snapshot is written and the journal starts empty.
+     * Whenever the journal grows past DictionaryJournal.COMPACTION_THRESHOLD, a new snapshot is written in the
+     * background (see checkpoint). Every other operation waits while the journal is opened, so that no change can be
+     * made to the dictionary being replaced after it was read and before the journal starts.
+     * @param snapshotPath the file path of the snapshot
+     * @param journalPath the file path of the journal
+     * @param policy when to force the journal to disk
+     * @throws IllegalStateException if a journal is already open
+     * @throws FileNotFoundError if the snapshot or journal cannot be read or written
+     * @throws CorruptSnapshotError if the snapshot or journal is not of this version or the snapshot fails its
+     *                              checksum
+     * @throws JournalError if the journal cannot be created
+     */
+     public void openJournal(String snapshotPath, String journalPath, DictionaryJournal.SyncPolicy policy)
+             throws FileNotFoundError, CorruptSnapshotError, JournalError
+     {
+         synchronized(checkpointLock)
+         {
+             // nothing may change from reading the current words until the journal that continues from them starts,
+             // as such a change would be neither in the new dictionary nor journaled
+             lock.writeLock().lock();
+             try
+             {
+                 if(journal != null)
+                     throw new IllegalStateException("A journal is already open");
+
+                 // start from the snapshot if there is one, and from the current words if not (e.g. on first use)
+                 Map<String, WordEntry> recovered = new ConcurrentHashMap<String, WordEntry>();
+                 if(new File(snapshotPath).exists())
+                 {
+                     for(WordEntry entry : DictionarySnapshot.read(snapshotPath))
+                         recovered.put(keyOf(entry.getWordName()), entry);
+                 }
+                 else
+                     recovered.putAll(dictionary);
+                 replayJournal(journalPath, recovered);
+                 install(new Contents(recovered));
+                 DictionarySnapshot.write(dictionary.values(), snapshotPath);
+                 DictionaryJournal.delete(journalPath);
+                 journalSnapshotPath = snapshotPath;
+                 journal = new DictionaryJournal(journalPath, policy, this::compactJournal);
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+         }
+     }
+
+    /**
+     * Writes a new snapshot to the path given to openJournal and empties the journal, so that replaying it at the
+     * next openJournal is quick. Changes wait while the snapshot is written, searches don't. Does nothing if no
+     * journal is open.
+     * @throws FileNotFoundError if the snapshot cannot be written
+     * @throws JournalError if the journal cannot be written
+     */
+     public void checkpoint() throws FileNotFoundError, JournalError
+     {
+         synchronized(checkpointLock)
+         {
+             DictionaryJournal current = journal;
+             if(current == null)
+                 return;
+
+             // the journal is set aside under the write lock, which is then downgraded to the read lock for
+             // writing the snapshot: no change can slip in between, but searches carry on meanwhile (their new
+             // frequencies go to the new journal, which is replayed on top of this snapshot)
+             lock.writeLock().lock();
+             try
+             {
+                 current.rollOver();
+                 lock.readLock().lock();
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             try
+             {
+                 DictionarySnapshot.write(dictionary.values(), journalSnapshotPath);
+             }
+             finally
+             {
+                 lock.readLock().unlock();
+             }
+             current.deleteOld();
+         }
+     }
+
+    /**
+     * Stops journaling, after writing everything journaled so far to disk. The snapshot and journal stay where they
+     * are, ready for the next openJournal. Does nothing if no journal is open.
+     * @throws JournalError if the last changes cannot be written
+     */
+     public void closeJournal() throws JournalError
+     {
+         synchronized(checkpointLock)
+         {
+             DictionaryJournal current;
+             lock.writeLock().lock();
+             try
+             {
+                 current = journal;
+                 journal = null;
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             if(current != null)
+                 current.close();
+         }
      }
 
      public void exportFileFromDict(String filePath) throws FileNotFoundError
      {
-         // use PrintWriter to print strings in TEXT format, in this case, to a file
-         try(PrintWriter out = new PrintWriter(filePath, StandardCharsets.UTF_8))
+         exportFileFromDict(filePath, percent -> {});
+     }
+
+    /**
+     * Writes every entry to a text file in descending order of search frequency, reporting how far the export has
+     * got. An empty dictionary is exported as an empty file.
+     * @param filePath the file path of the output text file
+     * @param progress called with the percentage (0 to 100) of entries written so far, each time it changes
+     * @throws FileNotFoundError if the file cannot be written for any reason
+     */
+     public void exportFileFromDict(String filePath, IntConsumer progress) throws FileNotFoundError
+     {
+         long started = metrics.start(DictionaryMetrics.Operation.EXPORT);
+         try
          {
-             // sort output in descending order of frequency
-             // unlike the implementation for FIND, I utilize the stream API here
-             // sorted() uses the fact that each word entry has a comparable implementation (see WordEntry.compareTo())
-             List<WordEntry> wordEntries = dictionary.values().stream().sorted().toList();
-             for(int i = 0; i < wordEntries.size() - 1; i++)
+             // entries are sorted in bounded runs, spilled to disk and merged (see ExportWriter), rather than sorting a
+             // copy of the whole dictionary
+             ExportWriter writer = new ExportWriter(filePath, progress);
+             lock.readLock().lock();
+             try
+             {
+                 for(WordEntry entry : dictionary.values())
+                     writer.add(entry);
+                 writer.finish();
+             }
+             finally
              {
-                 wordEntries.get(i).writeWordEntryToStream(out);
-                 out.println("\n");
+                 lock.readLock().unlock();
              }
-             wordEntries.getLast().writeWordEntryToStream(out);
          }
-         catch (IOException e)
+         finally
          {
-             throw new FileNotFoundError();
+             metrics.record(DictionaryMetrics.Operation.EXPORT, started);
          }
      }
 
+    /**
+     * Replays the journal at journalPath (and the set aside part of it, if a compaction didn't finish) onto a map.
+     * @param journalPath the file path of the journal
+     * @param into the dictionary to replay onto, keyed like insertEntry
+     */
+     private void replayJournal(String journalPath, Map<String, WordEntry> into)
+     {
+         DictionaryJournal.replay(journalPath, new DictionaryJournal.Replayer()
+         {
+             @Override
+             public void add(String word, String meaning)
+             {
+                 into.put(keyOf(word), new WordEntry(word, meaning));
+             }
+
+             @Override
+             public void remove(String word)
+             {
+                 into.remove(keyOf(word));
+             }
+
+             @Override
+             public void rename(String oldWord, String newWord, String meaning, int frequency)
+             {
+                 into.remove(keyOf(oldWord));
+                 into.put(keyOf(newWord), new WordEntry(newWord, meaning, frequency));
+             }
+
+             @Override
+             public void frequency(String word, int frequency)
+             {
+                 // the word may have been removed after this record, by a change also in the snapshot
+                 WordEntry entry = into.get(keyOf(word));
+                 if(entry != null)
+                     into.put(keyOf(word), new WordEntry(entry.getWordName(), entry.getWordMeaning(), frequency));
+             }
+
+             @Override
+             public void clear()
+             {
+                 into.clear();
+             }
+         });
+     }
+
+    /**
+     * Appends a record for a change to the journal, if one is open and not paused. Must be called with the lock that
+     * makes the change held, so records are appended in the order changes are made.
+     * @param record appends the record and returns its ticket
+     * @return the record's ticket, or 0 if nothing was journaled
+     */
+     private long journaled(ToLongFunction<DictionaryJournal> record)
+     {
+         DictionaryJournal current = journal;
+         if(current == null)
+             return 0;
+         return record.applyAsLong(current);
+     }
+
+    /**
+     * Waits for a journaled change to be committed, as far as the journal's SyncPolicy requires. Called after the
+     * lock is released, so that other changes can join the same group commit.
+     * @param ticket ticket returned by journaled
+     */
+     private void awaitJournal(long ticket)
+     {
+         DictionaryJournal current = journal;
+         if(ticket != 0 && current != null)
+             current.awaitCommit(ticket);
+     }
+
+     private void compactJournal()
+     {
+         DictionaryJournal current = journal;
+         try
+         {
+             checkpoint();
+         }
+         catch(FileNotFoundError | JournalError failed)
+         {
+             // try again once the journal has grown some more
+             if(current != null)
+                 current.compactionFailed();
+         }
+     }
+
+    /**
+     * Swaps in a complete new dictionary, whose indexes are built before any lock is taken, and checkpoints the
+     * journal (if one is open) so that it continues from the new dictionary rather than journaling every word.
+     * @param replacement the new dictionary, keyed like insertEntry
+     */
+     private void replaceContents(Map<String, WordEntry> replacement)
+     {
+         Contents built = new Contents(replacement);
+         synchronized(checkpointLock)
+         {
+             DictionaryJournal current;
+             lock.writeLock().lock();
+             try
+             {
+                 install(built);
+                 current = journal;
+                 // as in checkpoint, the snapshot is written under the read lock, so searches carry on meanwhile
+                 if(current != null)
+                 {
+                     current.rollOver();
+                     lock.readLock().lock();
+                 }
+             }
+             finally
+             {
+                 lock.writeLock().unlock();
+             }
+             if(current == null)
+                 return;
+             try
+             {
+                 DictionarySnapshot.write(dictionary.values(), journalSnapshotPath);
+             }
+             finally
+             {
+                 lock.readLock().unlock();
+             }
+             current.deleteOld();
+         }
+     }
+
+    /**
+     * A complete dictionary with all of its indexes, built off to the side while the current one keeps serving, to
+     * be put in place by install.
+     */
+    private class Contents
+    {
+        final Map<String, WordEntry> dictionary;
+        final SubstringIndex substringIndex;
+        final RankedSubstringLists rankedLists;
+        final RankedSubstringLists prefixLists;
+        final FuzzyIndex fuzzyIndex;
+        final MeaningArena meaningArena;
+
+        /**
+         * Builds the indexes for a new dictionary. Takes no lock, so it may run alongside any other operation.
+         * @param replacement the new dictionary, keyed like insertEntry; its entries may be replaced
+         */
+        Contents(Map<String, WordEntry> replacement)
+        {
+            // off-heap meanings go into an arena of their own, which replaces the old one along with the dictionary
+            if(DictionaryLogic.this.meaningArena != null)
+            {
+                meaningArena = new MeaningArena();
+                for(Map.Entry<String, WordEntry> entry : replacement.entrySet())
+                {
+                    WordEntry heapEntry = entry.getValue();
+                    entry.setValue(WordEntry.offHeap(heapEntry.getWordName(), heapEntry.getWordMeaning(),
+                            heapEntry.getFrequencySearched(), meaningArena));
+                }
+            }
+            else
+                meaningArena = null;
+
+            // scores aren't saved, so loaded frequencies count as searches made now
+            if(popularityDecay != null)
+                for(WordEntry entry : replacement.values())
+                    if(entry.getFrequencySearched() > 0 && entry.getPopularity() == Double.NEGATIVE_INFINITY)
+                        entry.addPopularity(popularityDecay.searchWeight(entry.getFrequencySearched()));
+
+            dictionary = replacement;
+            substringIndex = scanMode ? null : new SubstringIndex();
+            rankedLists = (rankedListSize > 0) ? new RankedSubstringLists(rankedListSize) : null;
+            prefixLists = (completionListSize > 0) ? new RankedPrefixLists(completionListSize) : null;
+            fuzzyIndex = (fuzzyDistance > 0) ? new FuzzyIndex(fuzzyDistance) : null;
+            for(Map.Entry<String, WordEntry> entry : dictionary.entrySet())
+            {
+                if(substringIndex != null)
+                    substringIndex.add(entry.getKey());
+                if(rankedLists != null)
+                    rankedLists.add(entry.getKey(), entry.getValue());
+                if(prefixLists != null)
+                    prefixLists.add(entry.getKey(), entry.getValue());
+                if(fuzzyIndex != null)
+                    fuzzyIndex.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Puts built contents in place of the current ones. findWord only reads the dictionary, which is swapped in a
+     * single volatile write; everything else reads the indexes with the lock held. Must be called with the write
+     * lock held.
+     * @param built the new contents
+     */
+     private void install(Contents built)
+     {
+         substringIndex = built.substringIndex;
+         rankedLists = built.rankedLists;
+         prefixLists = built.prefixLists;
+         fuzzyIndex = built.fuzzyIndex;
+         dictionary = built.dictionary;
+         if(built.meaningArena != null)
+             meaningArena = built.meaningArena;
+         if(queryCache != null)
+             queryCache.clear();
+     }
+
+    /**
+     * Makes room for a number of new entries up front, rather than letting the map resize itself repeatedly while
+     * they are put in. Only done when the batch would at least double the dictionary, where that saves a resize.
+     * Must be called with the write lock held.
+     * @param additions number of entries about to be added
+     */
+     private void reserve(int additions)
+     {
+         int size = dictionary.size();
+         if(additions < Math.max(size, 16))
+             return;
+         // findWord reads without the lock, so the copy is filled in before it replaces the map
+         Map<String, WordEntry> grown = new ConcurrentHashMap<String, WordEntry>(size + additions);
+         grown.putAll(dictionary);
+         dictionary = grown;
+     }
+
+    /**
+     * Puts an entry into the dictionary and all of its indexes. Must be called with the write lock held.
+     * @param key dictionary key of the entry
+     * @param entry the entry to add
+     */
+     private void insertEntry(String key, WordEntry entry)
+     {
+         dictionary.put(key, entry);
+         if(substringIndex != null)
+             substringIndex.add(key);
+         if(queryCache != null)
+             queryCache.wordChanged(key);
+         if(rankedLists != null)
+             rankedLists.add(key, entry);
+         if(prefixLists != null)
+             prefixLists.add(key, entry);
+         if(fuzzyIndex != null)
+             fuzzyIndex.add(key);
+     }
+
+    /**
+     * Removes a key from the dictionary and all of its indexes, if present. Must be called with the write lock held.
+     * @param key dictionary key to remove
+     * @return the removed entry, or null if the key wasn't present
+     */
+     private WordEntry deleteEntry(String key)
+     {
+         WordEntry removed = dictionary.remove(key);
+         if(removed == null)
+             return null;
+         if(substringIndex != null)
+             substringIndex.remove(key);
+         if(queryCache != null)
+             queryCache.wordChanged(key);
+         if(rankedLists != null)
+             rankedLists.remove(key, removed, substringIndex, dictionary::get);
+         if(prefixLists != null)
+             prefixLists.remove(key, removed, substringIndex, dictionary::get);
+         if(fuzzyIndex != null)
+             fuzzyIndex.remove(key);
+         return removed;
+     }
+
+    /**
+     * Frees the off-heap meaning of an entry that left the dictionary, if meanings are off-heap. Must be called with
+     * the write lock held.
+     * @param removed the removed entry, or null to do nothing
+     */
+     private void releaseMeaning(WordEntry removed)
+     {
+         if(meaningArena != null && removed != null)
+             meaningArena.release(removed);
+     }
+
+    /**
+     * Compacts the off-heap meanings if removals have left too much dead space. Must be called with the write lock
+     * held, so that the dictionary holds exactly the entries whose meanings are live.
+     */
+     private void compactMeanings()
+     {
+         if(meaningArena != null)
+             meaningArena.compactIfWasteful(dictionary.values());
+     }
+
+    /**
+     * Counts a FIND hit on an entry, either right away or through the frequency recorder. Must be called with at
+     * least the read lock held; concurrent callers are fine.
+     * @param entry the entry that was returned by a search
+     */
+     private void recordSearch(WordEntry entry)
+     {
+         if(frequencyRecorder == null || !frequencyRecorder.offer(entry))
+             applySearches(entry, 1);
+     }
+
+    /**
+     * Applies any FIND hits the frequency recorder has buffered, so that rankings reflect every search made so far.
+     * Does nothing unless DictionaryConfig.setFrequencyDrainInterval is used, as hits are applied right away then.
+     */
+     public void flushSearches()
+     {
+         if(frequencyRecorder != null)
+             frequencyRecorder.flush();
+     }
+
+    /**
+     * Applies the hits buffered by the frequency recorder, under the read lock like the searches that made them.
+     */
+     private void drainSearches()
+     {
+         lock.readLock().lock();
+         try
+         {
+             frequencyRecorder.drainTo((entry, hits) ->
+             {
+                 // an entry removed (or replaced by an import) since it was hit is no longer ranked
+                 if(dictionary.get(keyOf(entry.getWordName())) == entry)
+                     applySearches(entry, hits);
+             });
+         }
+         finally
+         {
+             lock.readLock().unlock();
+         }
+     }
+
+    /**
+     * Counts FIND hits on an entry and moves it up in any ranking that depends on its frequency. Must be called with
+     * at least the read lock held; concurrent callers are fine.
+     * @param entry the entry that was hit
+     * @param hits the number of hits
+     */
+     private void applySearches(WordEntry entry, int hits)
+     {
+         DictionaryJournal current = journal;
+         if(current == null)
+             entry.incrementFrequency(hits);
+         else
+         {
+             // the records of one word's frequency must be in the same order as the increments
+             synchronized(entry)
+             {
+                 entry.incrementFrequency(hits);
+                 try
+                 {
+                     current.frequency(entry.getWordName(), entry.getFrequencySearched());
+                 }
+                 catch(JournalError failed)
+                 {
+                     // a search doesn't fail for it; the journal keeps the failure, and the next change reports it
+                 }
+             }
+         }
+         // before the lists are told, so they move the entry up by its new score
+         if(popularityDecay != null)
+             entry.addPopularity(popularityDecay.searchWeight(hits));
+         if(rankedLists == null && prefixLists == null && queryCache == null)
+             return;
+         String key = keyOf(entry.getWordName());
+         if(queryCache != null)
+             queryCache.wordHit(key, entry);
+         if(rankedLists != null)
+             rankedLists.frequencyIncreased(key, entry);
+         if(prefixLists != null)
+             prefixLists.frequencyIncreased(key, entry);
+     }
+
+    /**
+     * The key a word is stored and looked up by in this dictionary (see keyOf(String, boolean)).
+     * @param word a word or search query
+     * @return the dictionary key for word
+     */
+     private String keyOf(String word)
+     {
+         return keyOf(word, caseInsensitive);
+     }
+
+    /**
+     * The key a word is stored and looked up by: the word itself, or in case-insensitive mode the word with A-Z
+     * folded to a-z (words are ASCII letters only, so no locale rules are needed). A word that is already lower case
+     * is returned as is, without copying. ShardedDictionary routes words to shards by the same key.
+     * @param word a word or search query
+     * @param caseInsensitive whether the dictionary is case-insensitive
+     * @return the dictionary key for word
+     */
+     static String keyOf(String word, boolean caseInsensitive)
+     {
+         if(!caseInsensitive)
+             return word;
+         for(int i = 0; i < word.length(); i++)
+         {
+             char c = word.charAt(i);
+             if(c >= 'A' && c <= 'Z')
+             {
+                 char[] folded = word.toCharArray();
+                 for(int j = i; j < folded.length; j++)
+                     if(folded[j] >= 'A' && folded[j] <= 'Z')
+                         folded[j] += 'a' - 'A';
+                 return new String(folded);
+             }
+         }
+         return word;
+     }
+
     /**
      * String format of the dictionary
      * @return string construction of the dictionary containing all relevant fields of the entry
@@ -224,10 +1587,19 @@ public class DictionaryLogic
      {
          StringBuilder strConstruction = new StringBuilder();
 
-         for(Map.Entry<String, WordEntry> entry : dictionary.entrySet())
+         // so that the listing never sees a change halfway, nor an off-heap meaning being moved by a compaction
+         lock.readLock().lock();
+         try
          {
-             strConstruction.append(entry.getValue().getWordName() + "\n" + entry.getValue().getFrequencySearched() +
-                     "\n" + entry.getValue().getWordMeaning() + "\n\n");
+             for(Map.Entry<String, WordEntry> entry : dictionary.entrySet())
+             {
+                 strConstruction.append(entry.getValue().getWordName() + "\n" +
+                         entry.getValue().getFrequencySearched() + "\n" + entry.getValue().getWordMeaning() + "\n\n");
+             }
+         }
+         finally
+         {
+             lock.readLock().unlock();
          }
 
          return strConstruction.toString();
@@ -235,6 +1607,14 @@ public class DictionaryLogic
 
      public void printDictionary()
      {
-         System.out.println(dictionary);
+         lock.readLock().lock();
+         try
+         {
+             System.out.println(dictionary);
+         }
+         finally
+         {
+             lock.readLock().unlock();
+         }
      }
 }
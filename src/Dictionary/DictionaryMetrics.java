@@ -0,0 +1,440 @@
+package Dictionary;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the operations of a DictionaryLogic (see DictionaryLogic.getMetrics), readable
+ * as a text dump or over JMX once registered.
+ * Timing an operation takes two System.nanoTime calls and a few striped (LongAdder) increments, and allocates
+ * nothing, so it can stay on in production; switched off (setEnabled(false)), it costs a volatile read. Threads
+ * recording the same latency don't contend on one counter. FIND and FIND_BATCH take well under a microsecond, which
+ * two clock reads would multiply, so only one in SAMPLE_RATE of them is timed: their counts are exact, but their
+ * means and percentiles are those of the sampled calls. Latencies go into log-linear histograms: exact
+ * below 16 ns, then 8 buckets per power of two, so every percentile is within 12.5% of the true value whatever the
+ * range of latencies.
+ * The statistics of an operation are read without stopping it, so while operations are running they may be off by
+ * the few operations that were being recorded at the time.
+ */
+
+public class DictionaryMetrics implements DictionaryMetricsMXBean
+{
+    /**
+     * The operations that are timed.
+     */
+    public enum Operation
+    {
+        FIND("find", true),
+        SUBSTRING_SEARCH("substring search", false),
+        ADD("add", false),
+        REMOVE("remove", false),
+        MODIFY("modify", false),
+        IMPORT("import", false),
+        EXPORT("export", false),
+        FIND_BATCH("find batch", true),
+        ADD_BATCH("add batch", false),
+        REMOVE_BATCH("remove batch", false);
+
+        private final String label;
+        private final boolean sampled;
+
+        Operation(String label, boolean sampled)
+        {
+            this.label = label;
+            this.sampled = sampled;
+        }
+
+        /**
+         * @return whether only one in SAMPLE_RATE of these operations is timed
+         */
+        public boolean isSampled()
+        {
+            return sampled;
+        }
+
+        @Override
+        public String toString()
+        {
+            return label;
+        }
+    }
+
+    /**
+     * What start returns while the metrics are off, so the matching record call does nothing.
+     */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    // what start returns for a sampled operation that is counted but not timed
+    private static final long NOT_SAMPLED = Long.MIN_VALUE + 1;
+
+    /**
+     * One in this many sampled operations (see Operation.isSampled) is timed.
+     */
+    public static final int SAMPLE_RATE = 64;
+
+    /**
+     * The statistics of one histogram at the time they were read.
+     */
+    public static class Stats
+    {
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        Stats(long count, double mean, long p50, long p99, long p999, long max)
+        {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getMean()
+        {
+            return mean;
+        }
+
+        public long getP50()
+        {
+            return p50;
+        }
+
+        public long getP99()
+        {
+            return p99;
+        }
+
+        public long getP999()
+        {
+            return p999;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+    }
+
+    private volatile boolean enabled;
+    // latencies in nanoseconds, per operation
+    private final Histogram[] latencies;
+    // every call of each sampled operation, timed or not
+    private final LongAdder[] calls;
+    private final Histogram candidates;
+    private ObjectName registeredAs;
+
+    /**
+     * Creates metrics with every count at zero, switched on.
+     */
+    public DictionaryMetrics()
+    {
+        this.enabled = true;
+        this.latencies = new Histogram[Operation.values().length];
+        this.calls = new LongAdder[latencies.length];
+        for(int i = 0; i < latencies.length; i++)
+        {
+            latencies[i] = new Histogram();
+            calls[i] = new LongAdder();
+        }
+        this.candidates = new Histogram();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Switches recording on or off. What was recorded so far is kept.
+     * @param enabled whether to record
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Marks the start of an operation, to be passed to record when it ends. A sampled operation (see
+     * Operation.isSampled) is only timed once in SAMPLE_RATE calls.
+     * @param operation the operation about to run
+     * @return the start time, or NOT_TIMED if the metrics are off (for a call that is counted but not timed, a value
+     *         that tells record so)
+     */
+    public long start(Operation operation)
+    {
+        if(!enabled)
+            return NOT_TIMED;
+        if(operation.sampled && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0)
+            return NOT_SAMPLED;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the latency of an operation that has just ended, successfully or not.
+     * @param operation the operation
+     * @param started what start returned when it began
+     */
+    public void record(Operation operation, long started)
+    {
+        if(started == NOT_TIMED)
+            return;
+        if(operation.sampled)
+            calls[operation.ordinal()].increment();
+        if(started != NOT_SAMPLED)
+            latencies[operation.ordinal()].record(System.nanoTime() - started);
+    }
+
+    /**
+     * Records how many words a substring search had to rank.
+     * @param count number of candidate words
+     */
+    public void recordCandidates(int count)
+    {
+        if(enabled)
+            candidates.record(count);
+    }
+
+    /**
+     * The latency statistics of an operation, in nanoseconds.
+     * @param operation the operation
+     * @return its statistics
+     */
+    public Stats latency(Operation operation)
+    {
+        Stats timed = latencies[operation.ordinal()].stats();
+        if(!operation.sampled)
+            return timed;
+        return new Stats(calls[operation.ordinal()].sum(), timed.mean, timed.p50, timed.p99, timed.p999, timed.max);
+    }
+
+    public Stats getFind()
+    {
+        return latency(Operation.FIND);
+    }
+
+    public Stats getSubstringSearch()
+    {
+        return latency(Operation.SUBSTRING_SEARCH);
+    }
+
+    public Stats getAdd()
+    {
+        return latency(Operation.ADD);
+    }
+
+    public Stats getRemove()
+    {
+        return latency(Operation.REMOVE);
+    }
+
+    public Stats getModify()
+    {
+        return latency(Operation.MODIFY);
+    }
+
+    public Stats getImport()
+    {
+        return latency(Operation.IMPORT);
+    }
+
+    public Stats getExport()
+    {
+        return latency(Operation.EXPORT);
+    }
+
+    public Stats getFindBatch()
+    {
+        return latency(Operation.FIND_BATCH);
+    }
+
+    public Stats getAddBatch()
+    {
+        return latency(Operation.ADD_BATCH);
+    }
+
+    public Stats getRemoveBatch()
+    {
+        return latency(Operation.REMOVE_BATCH);
+    }
+
+    public Stats getCandidates()
+    {
+        return candidates.stats();
+    }
+
+    /**
+     * Sets every count back to zero.
+     */
+    public void reset()
+    {
+        for(Histogram histogram : latencies)
+            histogram.reset();
+        for(LongAdder count : calls)
+            count.reset();
+        candidates.reset();
+    }
+
+    /**
+     * Writes the statistics of every operation as a table, one line per operation.
+     * @return the table
+     */
+    public String dump()
+    {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-17s %10s %12s %12s %12s %12s %12s%n", "latency (ns)", "count", "mean", "p50",
+                "p99", "p999", "max"));
+        for(Operation operation : Operation.values())
+            appendRow(out, operation.toString(), latency(operation));
+        appendRow(out, "candidates", getCandidates());
+        if(!enabled)
+            out.append("(recording is off)").append(System.lineSeparator());
+        return out.toString();
+    }
+
+    /**
+     * Makes the metrics readable over JMX, as Dictionary:type=DictionaryMetrics,name=(name).
+     * @param name distinguishes the dictionaries of one JVM
+     * @throws JMException if the name is taken or the platform MBean server refuses it
+     */
+    public synchronized void register(String name) throws JMException
+    {
+        ObjectName objectName = new ObjectName("Dictionary:type=DictionaryMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredAs = objectName;
+    }
+
+    /**
+     * Undoes register, if it was called.
+     * @throws JMException if the platform MBean server refuses it
+     */
+    public synchronized void unregister() throws JMException
+    {
+        if(registeredAs == null)
+            return;
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        registeredAs = null;
+    }
+
+    private static void appendRow(StringBuilder out, String label, Stats stats)
+    {
+        out.append(String.format("%-17s %10d %12.1f %12d %12d %12d %12d%n", label, stats.getCount(), stats.getMean(),
+                stats.getP50(), stats.getP99(), stats.getP999(), stats.getMax()));
+    }
+
+    /**
+     * A histogram of non-negative values in log-linear buckets: one per value below 16, then SUB_BUCKETS per power
+     * of two. Each bucket is a LongAdder, created when it is first used, since most buckets of a histogram never are.
+     */
+    private static class Histogram
+    {
+        private static final int EXACT = 16;
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        // powers of two from 2^4 up to 2^62
+        private static final int BUCKETS = EXACT + (63 - 4) * SUB_BUCKETS;
+
+        private final AtomicReferenceArray<LongAdder> buckets;
+        private final LongAdder sum;
+        private final LongAccumulator max;
+
+        Histogram()
+        {
+            this.buckets = new AtomicReferenceArray<LongAdder>(BUCKETS);
+            this.sum = new LongAdder();
+            this.max = new LongAccumulator(Math::max, 0);
+        }
+
+        void record(long value)
+        {
+            // a clock going backwards counts as 0
+            value = Math.max(0, value);
+            int index = bucketOf(value);
+            LongAdder bucket = buckets.get(index);
+            if(bucket == null)
+            {
+                buckets.compareAndSet(index, null, new LongAdder());
+                bucket = buckets.get(index);
+            }
+            bucket.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        void reset()
+        {
+            for(int i = 0; i < BUCKETS; i++)
+            {
+                LongAdder bucket = buckets.get(i);
+                if(bucket != null)
+                    bucket.reset();
+            }
+            sum.reset();
+            max.reset();
+        }
+
+        Stats stats()
+        {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for(int i = 0; i < BUCKETS; i++)
+            {
+                LongAdder bucket = buckets.get(i);
+                count += counts[i] = (bucket == null) ? 0 : bucket.sum();
+            }
+            long largest = max.get();
+            double mean = (count == 0) ? 0 : (double) sum.sum() / count;
+            return new Stats(count, mean, percentile(counts, count, 0.5, largest),
+                    percentile(counts, count, 0.99, largest), percentile(counts, count, 0.999, largest), largest);
+        }
+
+        // the upper end of the bucket holding the value at the given rank, which is never above the maximum
+        private static long percentile(long[] counts, long count, double fraction, long largest)
+        {
+            if(count == 0)
+                return 0;
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for(int i = 0; i < BUCKETS; i++)
+            {
+                seen += counts[i];
+                if(seen >= rank)
+                    return Math.min(largest, upperEnd(i));
+            }
+            return largest;
+        }
+
+        private static int bucketOf(long value)
+        {
+            if(value < EXACT)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return EXACT + (exponent - 4) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperEnd(int bucket)
+        {
+            if(bucket < EXACT)
+                return bucket;
+            int exponent = (bucket - EXACT) / SUB_BUCKETS + 4;
+            long sub = (bucket - EXACT) % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BITS);
+            return (SUB_BUCKETS + sub) * width + width - 1;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package Dictionary;
+
+/**
+ * The management interface of DictionaryMetrics, as seen over JMX (e.g. in JConsole under "Dictionary"). Each
+ * operation's statistics are one composite attribute; latencies are in nanoseconds.
+ */
+
+public interface DictionaryMetricsMXBean
+{
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    DictionaryMetrics.Stats getFind();
+
+    DictionaryMetrics.Stats getSubstringSearch();
+
+    DictionaryMetrics.Stats getAdd();
+
+    DictionaryMetrics.Stats getRemove();
+
+    DictionaryMetrics.Stats getModify();
+
+    DictionaryMetrics.Stats getImport();
+
+    DictionaryMetrics.Stats getExport();
+
+    DictionaryMetrics.Stats getFindBatch();
+
+    DictionaryMetrics.Stats getAddBatch();
+
+    DictionaryMetrics.Stats getRemoveBatch();
+
+    /**
+     * The number of words each substring search had to rank, for searches not answered by the ranked lists.
+     * @return statistics of the candidate counts (not nanoseconds)
+     */
+    DictionaryMetrics.Stats getCandidates();
+
+    void reset();
+
+    String dump();
+}
@@ -0,0 +1,499 @@
+package Dictionary;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless mode of the program: serves a DictionaryLogic over HTTP, using the JDK's built-in server with a virtual
+ * thread per request, so that a request blocked on the dictionary's lock (or on a slow client) costs no platform
+ * thread. Connections are kept alive between requests (HTTP/1.1 persistent connections).
+ * All bodies are UTF-8 plain text. Every endpoint that takes words takes a batch of them, one per line, and answers
+ * with one result per line (or block of lines) in the same order:
+ * - GET /find?word=w, or POST /find with words: per word, a line "word TAB frequency TAB meaning", or an empty line
+ *   if it is not in the dictionary.
+ * - GET /top?query=q&amp;k=3, or POST /top?k=3 with queries: per query, the top k words containing it (findWordByFreq,
+ *   which counts as a search of each word returned) as lines like /find's, followed by an empty line.
+ * - POST /add with lines "word TAB meaning", POST /modify with lines "old word TAB new word", POST /remove with
+ *   words: per line, "OK" or "ERROR " and the reason.
+ * - POST /import[?bulk=true] with a file in the import format as the body: "OK" or "ERROR " and the reason.
+ * - GET /export: the export of the dictionary (exportFileFromDict) as the body.
+ * - GET /history?session=s: the session's search history, most recent first, one word per line.
+ * - GET /metrics: the dictionary's latency metrics (DictionaryMetrics.dump), which main also registers with JMX.
+ * /find and /top take an optional session parameter; the words they find are pushed onto that session's search
+ * history, as the GUI does for its own (see SearchHistoryRegistry for when idle sessions are dropped).
+ * Meanings are escaped so that every result stays on one line: backslash, newline, carriage return and tab are
+ * written as \\, \n, \r and \t, and are unescaped the same way in /add requests.
+ * A request that is not understood at all (wrong method, missing parameter, malformed line) gets 400 or 405 with the
+ * reason as the body, and one that fails unexpectedly gets 500.
+ */
+
+public class DictionaryServer
+{
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_K = 3;
+    public static final int HISTORY_CAPACITY = 100;
+    public static final long SESSION_IDLE_MILLIS = 30 * 60 * 1000;
+
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    static
+    {
+        // the server writes a response's headers and body separately, so without TCP_NODELAY the body of every
+        // response on a kept alive connection waits for the client's delayed ACK (about 40ms). The JDK reads this
+        // once, when the first server is created
+        if(System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final DictionaryLogic logic;
+    private final SearchHistoryRegistry<String> histories;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * A request that the server cannot handle, answered with its status code and message.
+     */
+    private static class BadRequest extends RuntimeException
+    {
+        final int status;
+
+        BadRequest(int status, String message)
+        {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * One endpoint: takes the exchange and returns the response body (or null if it sent the response itself).
+     */
+    private interface Endpoint
+    {
+        byte[] handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Creates a server for the dictionary, not yet started.
+     * @param logic the dictionary to serve
+     * @param address the address and port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public DictionaryServer(DictionaryLogic logic, InetSocketAddress address) throws IOException
+    {
+        this.logic = logic;
+        this.histories = new SearchHistoryRegistry<String>(HISTORY_CAPACITY, SESSION_IDLE_MILLIS);
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        route("/find", this::find);
+        route("/top", this::top);
+        route("/add", this::add);
+        route("/modify", this::modify);
+        route("/remove", this::remove);
+        route("/import", this::importFile);
+        route("/export", this::export);
+        route("/history", this::history);
+        route("/metrics", this::metrics);
+    }
+
+    /**
+     * Starts the server on the given port of the loopback interface, with an empty dictionary or the contents of an
+     * import file.
+     * @param args optional port (default DEFAULT_PORT), then an optional file in the import format to load
+     */
+    public static void main(String[] args) throws IOException, JMException
+    {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        DictionaryLogic logic = new DictionaryLogic(new DictionaryConfig().setRankedListSize(DEFAULT_K));
+        if(args.length > 1)
+            logic.bulkImportFileToDict(args[1], percent -> {});
+        logic.getMetrics().register("server");
+        DictionaryServer server = new DictionaryServer(logic,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.start();
+        System.out.println("Serving the dictionary on http://localhost:" + server.getPort() + "/");
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops accepting connections, waits up to the given time for requests being handled, then stops.
+     * @param delaySeconds longest time to wait for running requests
+     */
+    public void stop(int delaySeconds)
+    {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * The port listened on, which is useful when the server was created for port 0 (any free port).
+     * @return the port
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    private void route(String path, Endpoint endpoint)
+    {
+        server.createContext(path, exchange ->
+        {
+            try(exchange)
+            {
+                byte[] body;
+                int status = 200;
+                try
+                {
+                    body = endpoint.handle(exchange);
+                }
+                catch(BadRequest bad)
+                {
+                    status = bad.status;
+                    body = bad.getMessage().getBytes(StandardCharsets.UTF_8);
+                }
+                catch(RuntimeException unexpected)
+                {
+                    // without a response, the client would only see the connection drop
+                    status = 500;
+                    body = String.valueOf(unexpected).getBytes(StandardCharsets.UTF_8);
+                }
+                if(body == null)
+                    return;
+                // a keep-alive connection can only take the next request once this one's body has been read
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                exchange.getResponseHeaders().set("Content-Type", TEXT);
+                exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+                if(body.length > 0)
+                    exchange.getResponseBody().write(body);
+            }
+        });
+    }
+
+    private byte[] find(HttpExchange exchange) throws IOException
+    {
+        SearchHistoryStack<String> history = historyOf(exchange);
+        StringBuilder out = new StringBuilder();
+        for(WordEntry entry : logic.findWords(words(exchange, "word")))
+        {
+            if(entry != null)
+            {
+                appendEntry(out, entry);
+                if(history != null)
+                    history.push(entry.getWordName());
+            }
+            out.append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] top(HttpExchange exchange) throws IOException
+    {
+        Map<String, String> parameters = parameters(exchange);
+        int k = DEFAULT_K;
+        if(parameters.containsKey("k"))
+        {
+            try
+            {
+                k = Integer.parseInt(parameters.get("k"));
+            }
+            catch(NumberFormatException notNumber)
+            {
+                k = -1;
+            }
+            if(k < 1)
+                throw new BadRequest(400, "k must be a positive number: " + parameters.get("k"));
+        }
+
+        SearchHistoryStack<String> history = historyOf(exchange);
+        StringBuilder out = new StringBuilder();
+        for(String query : words(exchange, "query"))
+        {
+            List<WordEntry> found = logic.findWordByFreq(query, k);
+            for(WordEntry entry : found)
+            {
+                appendEntry(out, entry);
+                out.append('\n');
+            }
+            out.append('\n');
+            // pushed least frequent first, so the most frequent ends up on top
+            if(history != null)
+                for(WordEntry entry : found.reversed())
+                    history.push(entry.getWordName());
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] add(HttpExchange exchange) throws IOException
+    {
+        requirePost(exchange);
+        List<String> words = new ArrayList<String>();
+        List<String> meanings = new ArrayList<String>();
+        for(String[] fields : pairs(exchange))
+        {
+            words.add(fields[0]);
+            meanings.add(unescape(fields[1]));
+        }
+        return outcomes(logic.addWords(words, meanings));
+    }
+
+    private byte[] modify(HttpExchange exchange) throws IOException
+    {
+        requirePost(exchange);
+        StringBuilder out = new StringBuilder();
+        for(String[] fields : pairs(exchange))
+            outcome(out, () -> logic.modifyMeaning(fields[1], fields[0]));
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] remove(HttpExchange exchange) throws IOException
+    {
+        requirePost(exchange);
+        return outcomes(logic.removeWords(lines(exchange)));
+    }
+
+    private byte[] importFile(HttpExchange exchange) throws IOException
+    {
+        requirePost(exchange);
+        boolean bulk = "true".equals(parameters(exchange).get("bulk"));
+        // the importers read files, so the body is spooled to one first
+        Path spooled = Files.createTempFile("dictionary-import", ".txt");
+        try
+        {
+            try(OutputStream out = Files.newOutputStream(spooled))
+            {
+                exchange.getRequestBody().transferTo(out);
+            }
+            StringBuilder out = new StringBuilder();
+            if(bulk)
+                outcome(out, () -> logic.bulkImportFileToDict(spooled.toString(), percent -> {}));
+            else
+                outcome(out, () -> logic.importFileToDict(spooled.toString()));
+            return out.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        finally
+        {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    private byte[] export(HttpExchange exchange) throws IOException
+    {
+        if(!exchange.getRequestMethod().equals("GET"))
+            throw new BadRequest(405, "Use GET for /export");
+        Path exported = Files.createTempFile("dictionary-export", ".txt");
+        try
+        {
+            logic.exportFileFromDict(exported.toString());
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            exchange.getResponseHeaders().set("Content-Type", TEXT);
+            long length = Files.size(exported);
+            exchange.sendResponseHeaders(200, (length == 0) ? -1 : length);
+            if(length > 0)
+                Files.copy(exported, exchange.getResponseBody());
+            return null;
+        }
+        finally
+        {
+            Files.deleteIfExists(exported);
+        }
+    }
+
+    private byte[] history(HttpExchange exchange)
+    {
+        if(!exchange.getRequestMethod().equals("GET"))
+            throw new BadRequest(405, "Use GET for /history");
+        SearchHistoryStack<String> history = historyOf(exchange);
+        if(history == null)
+            throw new BadRequest(400, "Missing parameter session");
+        StringBuilder out = new StringBuilder();
+        history.forEach(word -> out.append(word).append('\n'));
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] metrics(HttpExchange exchange)
+    {
+        if(!exchange.getRequestMethod().equals("GET"))
+            throw new BadRequest(405, "Use GET for /metrics");
+        String dump = logic.getMetrics().dump();
+        if(logic.getQueryCache() != null)
+            dump += logic.getQueryCache() + System.lineSeparator();
+        return dump.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // the history of the request's session, or null if it names none
+    private SearchHistoryStack<String> historyOf(HttpExchange exchange)
+    {
+        String session = parameters(exchange).get("session");
+        return (session == null || session.isEmpty()) ? null : histories.history(session);
+    }
+
+    // the words of a GET (one, from a query parameter) or a POST (one per line of the body)
+    private static List<String> words(HttpExchange exchange, String parameter) throws IOException
+    {
+        if(exchange.getRequestMethod().equals("GET"))
+        {
+            String word = parameters(exchange).get(parameter);
+            if(word == null)
+                throw new BadRequest(400, "Missing parameter " + parameter);
+            return List.of(word);
+        }
+        requirePost(exchange);
+        return lines(exchange);
+    }
+
+    private static void requirePost(HttpExchange exchange)
+    {
+        if(!exchange.getRequestMethod().equals("POST"))
+            throw new BadRequest(405, "Use POST for " + exchange.getRequestURI().getPath());
+    }
+
+    private static List<String> lines(HttpExchange exchange) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while((line = in.readLine()) != null)
+            lines.add(line);
+        return lines;
+    }
+
+    // every line of the body split at its first tab; all lines are checked before any is applied
+    private static List<String[]> pairs(HttpExchange exchange) throws IOException
+    {
+        List<String[]> pairs = new ArrayList<String[]>();
+        for(String line : lines(exchange))
+        {
+            String[] fields = line.split("\t", 2);
+            if(fields.length != 2)
+                throw new BadRequest(400, "Expected two fields separated by a tab: " + line);
+            pairs.add(fields);
+        }
+        return pairs;
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange)
+    {
+        Map<String, String> parameters = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if(query == null)
+            return parameters;
+        for(String pair : query.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            if(equals < 0)
+                parameters.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+            else
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    // runs one change of a batch, appending "OK" or the reason it failed
+    private static void outcome(StringBuilder out, Runnable change)
+    {
+        try
+        {
+            change.run();
+            out.append("OK\n");
+        }
+        catch(WordDuplicatedError | WordNotFoundError | InvalidWordError | FileNotFoundError
+              | CorruptSnapshotError | JournalError failed)
+        {
+            out.append("ERROR ").append(failed.getMessage().replace('\n', ' ')).append('\n');
+        }
+    }
+
+    private static byte[] outcomes(BatchResult result)
+    {
+        StringBuilder out = new StringBuilder();
+        for(int i = 0; i < result.size(); i++)
+        {
+            if(result.isOk(i))
+                out.append("OK\n");
+            else
+                out.append("ERROR ").append(result.getError(i).getMessage().replace('\n', ' ')).append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendEntry(StringBuilder out, WordEntry entry)
+    {
+        out.append(entry.getWordName()).append('\t').append(entry.getFrequencySearched()).append('\t');
+        escape(out, entry.getWordMeaning());
+    }
+
+    static void escape(StringBuilder out, String text)
+    {
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch(c)
+            {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    static String unescape(String text)
+    {
+        if(text.indexOf('\\') < 0)
+            return text;
+        StringBuilder out = new StringBuilder(text.length());
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if(c != '\\' || i + 1 == text.length())
+            {
+                out.append(c);
+                continue;
+            }
+            char escaped = text.charAt(++i);
+            switch(escaped)
+            {
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                default:
+                    out.append(escaped);
+            }
+        }
+        return out.toString();
+    }
+}
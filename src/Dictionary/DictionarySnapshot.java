@@ -0,0 +1,208 @@
+package Dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the dictionary, for restarting without re-parsing and re-validating the text format.
+ * A snapshot is a fixed-size header followed by the entries:
+ * - header: magic "DICTSNAP" (8 bytes), format version (int), flags (int, reserved and 0), number of entries
+ *   (long), payload length in bytes (long), CRC32 of the payload (long)
+ * - payload, per entry: word length (int), word (ASCII), search frequency (int), meaning length in bytes (int),
+ *   meaning (UTF-8)
+ * All numbers are big-endian. The file is loaded by memory-mapping it and checksumming the mapped payload in one go.
+ * Each word and meaning is then decoded straight out of the mapping at the length it is stored with, rather than
+ * found by splitting lines, and the words aren't validated again, since the checksum vouches that they are the ones
+ * a dictionary saved. Snapshots are written to a temporary file that is then moved over the old one, so a crash
+ * while saving never leaves a half-written snapshot behind.
+ * Meanings are decoded when the snapshot is read rather than left in the mapping, since the next snapshot replaces
+ * the file while it would still be mapped (which Windows doesn't allow). The search indexes aren't saved either; they
+ * are rebuilt from the entries.
+ */
+
+public class DictionarySnapshot
+{
+    public static final int VERSION = 1;
+
+    private static final long MAGIC = 0x44494354534E4150L;
+    private static final int HEADER_SIZE = 8 + 4 + 4 + 8 + 8 + 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+    // the payload is mapped in windows of at most this size, since a single mapping is limited to 2GB
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private DictionarySnapshot() {}
+
+    /**
+     * Writes the given entries as a snapshot. The caller must make sure the collection doesn't change while it is
+     * written (frequencies may still change).
+     * @param entries the entries to save
+     * @param filePath the file path of the snapshot
+     * @throws FileNotFoundError if the file cannot be written for any reason
+     */
+    public static void write(Collection<WordEntry> entries, String filePath) throws FileNotFoundError
+    {
+        Path target = Path.of(filePath).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try
+        {
+            try(FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                CRC32 crc = new CRC32();
+                long count = 0;
+                long payloadLength = 0;
+
+                // the header is written last, once the count, length and checksum are known
+                out.position(HEADER_SIZE);
+                for(WordEntry entry : entries)
+                {
+                    byte[] word = entry.getWordName().getBytes(StandardCharsets.US_ASCII);
+                    byte[] meaning = entry.getWordMeaning().getBytes(StandardCharsets.UTF_8);
+                    payloadLength += put(out, buffer, crc, word, entry.getFrequencySearched(), meaning);
+                    count++;
+                }
+                flush(out, buffer, crc);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putLong(MAGIC).putInt(VERSION).putInt(0).putLong(count).putLong(payloadLength)
+                        .putLong(crc.getValue()).flip();
+                out.write(header, 0);
+                out.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException except)
+        {
+            throw new FileNotFoundError();
+        }
+        finally
+        {
+            // once moved there is nothing left to delete; otherwise don't leave a half-written file behind
+            deleteTemporary(temp);
+        }
+    }
+
+    /**
+     * Loads the entries of a snapshot.
+     * @param filePath the file path of the snapshot
+     * @return the entries, with their saved search frequencies
+     * @throws FileNotFoundError if the file cannot be read for any reason
+     * @throws CorruptSnapshotError if the file is not a snapshot of this version or fails its checksum
+     */
+    public static WordEntry[] read(String filePath) throws FileNotFoundError, CorruptSnapshotError
+    {
+        try(FileChannel in = FileChannel.open(Path.of(filePath), StandardOpenOption.READ))
+        {
+            if(in.size() < HEADER_SIZE)
+                throw new CorruptSnapshotError("it is too short to be a snapshot");
+            MappedByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if(header.getLong() != MAGIC)
+                throw new CorruptSnapshotError("it is not a snapshot");
+            int version = header.getInt();
+            if(version != VERSION)
+                throw new CorruptSnapshotError("version " + version + " is not supported");
+            header.getInt();
+            long count = header.getLong();
+            long payloadLength = header.getLong();
+            long checksum = header.getLong();
+            if(payloadLength != in.size() - HEADER_SIZE || count < 0 || count > Integer.MAX_VALUE)
+                throw new CorruptSnapshotError("it is truncated");
+
+            // checksum everything before trusting any of the lengths in the payload
+            CRC32 crc = new CRC32();
+            for(long pos = 0; pos < payloadLength; pos += WINDOW_SIZE)
+                crc.update(in.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + pos,
+                        Math.min(WINDOW_SIZE, payloadLength - pos)));
+            if(crc.getValue() != checksum)
+                throw new CorruptSnapshotError("the checksum does not match");
+
+            WordEntry[] entries = new WordEntry[(int) count];
+            long windowStart = HEADER_SIZE;
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(WINDOW_SIZE, payloadLength));
+            for(int i = 0; i < entries.length; i++)
+            {
+                // remap from this entry on if it might not fit in what is left of the window
+                int wordLength = (window.remaining() >= 4) ? window.getInt(window.position()) : -1;
+                if(wordLength < 0 || window.remaining() < 4L + wordLength + 8)
+                {
+                    windowStart += window.position();
+                    window = in.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(WINDOW_SIZE, in.size() - windowStart));
+                }
+                String word = slice(window, window.getInt(), StandardCharsets.US_ASCII);
+                int frequency = window.getInt();
+                int meaningLength = window.getInt();
+                if(window.remaining() < meaningLength)
+                {
+                    windowStart += window.position();
+                    window = in.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(WINDOW_SIZE, in.size() - windowStart));
+                }
+                entries[i] = WordEntry.trusted(word, slice(window, meaningLength, StandardCharsets.UTF_8), frequency);
+            }
+            return entries;
+        }
+        catch(IOException except)
+        {
+            throw new FileNotFoundError();
+        }
+    }
+
+    // buffers one entry, flushing first if it doesn't fit; returns the number of payload bytes it takes
+    private static int put(FileChannel out, ByteBuffer buffer, CRC32 crc, byte[] word, int frequency, byte[] meaning)
+            throws IOException
+    {
+        int size = 4 + word.length + 4 + 4 + meaning.length;
+        if(buffer.remaining() < size)
+            flush(out, buffer, crc);
+        if(buffer.remaining() < size)
+        {
+            // larger than the whole buffer, so write it on its own
+            ByteBuffer large = ByteBuffer.allocate(size);
+            large.putInt(word.length).put(word).putInt(frequency).putInt(meaning.length).put(meaning).flip();
+            crc.update(large.duplicate());
+            while(large.hasRemaining())
+                out.write(large);
+            return size;
+        }
+        buffer.putInt(word.length).put(word).putInt(frequency).putInt(meaning.length).put(meaning);
+        return size;
+    }
+
+    private static void deleteTemporary(Path temp)
+    {
+        try
+        {
+            Files.deleteIfExists(temp);
+        }
+        catch(IOException except)
+        {
+            // the failure that got here matters more, and the next write truncates the file anyway
+        }
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer, CRC32 crc) throws IOException
+    {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while(buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+
+    private static String slice(ByteBuffer window, int length, Charset charset)
+    {
+        byte[] bytes = new byte[length];
+        window.get(bytes);
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,377 @@
+package Dictionary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes the text export of the dictionary (see DictionaryLogic.exportFileFromDict) in descending order of search
+ * frequency, ties broken alphabetically, without ever holding a sorted copy of the whole dictionary.
+ * Entries are added in any order and sorted in runs of RUN_SIZE (by default). Every full run is spilled to a temporary
+ * file next to the output, and the output is a merge of the spilled runs and the last one, which stays in memory. If
+ * there are more than MAX_FAN_IN runs (by default), they are first merged into longer runs, so memory use stays the
+ * same for any dictionary size: one run of entries plus a read buffer per run being merged.
+ * Each entry's frequency is read once, when it is added, so an entry is sorted and written by the same frequency even
+ * if it is searched meanwhile.
+ * The output is written through one large buffer straight to a FileChannel, as word, frequency and meaning on their
+ * own lines, with an empty line (written as PrintWriter.println("\n") would) between entries.
+ */
+
+public class ExportWriter
+{
+    public static final int RUN_SIZE = 1 << 16;
+    public static final int MAX_FAN_IN = 64;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+    private static final byte[] SEPARATOR = ("\n" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * An entry with the frequency it is sorted by.
+     */
+    private record Pending(WordEntry entry, int frequency) {}
+
+    private static final Comparator<Pending> PENDING_ORDER = Comparator.comparingInt((Pending p) -> -p.frequency())
+            .thenComparing(p -> p.entry().getWordName());
+
+    /**
+     * The next entry of a sorted run, read from a spill file or from the run kept in memory.
+     */
+    private static abstract class Run
+    {
+        int frequency;
+        // words are ASCII, so comparing their bytes orders them like comparing the words
+        byte[] word;
+        byte[] meaning;
+
+        /**
+         * Moves on to the next entry.
+         * @return false if the run has no more entries
+         */
+        abstract boolean next() throws IOException;
+
+        void close() throws IOException {}
+    }
+
+    private static final Comparator<Run> RUN_ORDER = Comparator.comparingInt((Run r) -> -r.frequency)
+            .thenComparing(r -> r.word, Arrays::compare);
+
+    private static class SpilledRun extends Run
+    {
+        private final DataInputStream in;
+
+        SpilledRun(Path file) throws IOException
+        {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), RUN_BUFFER_SIZE));
+        }
+
+        @Override
+        boolean next() throws IOException
+        {
+            try
+            {
+                frequency = in.readInt();
+            }
+            catch(EOFException end)
+            {
+                return false;
+            }
+            word = in.readNBytes(in.readInt());
+            meaning = in.readNBytes(in.readInt());
+            return true;
+        }
+
+        @Override
+        void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    private static class MemoryRun extends Run
+    {
+        private final Pending[] entries;
+        private int next;
+
+        MemoryRun(Pending[] entries)
+        {
+            this.entries = entries;
+        }
+
+        @Override
+        boolean next()
+        {
+            if(next == entries.length)
+                return false;
+            Pending pending = entries[next++];
+            frequency = pending.frequency();
+            word = pending.entry().getWordName().getBytes(StandardCharsets.US_ASCII);
+            meaning = pending.entry().getWordMeaning().getBytes(StandardCharsets.UTF_8);
+            return true;
+        }
+    }
+
+    private final Path target;
+    private final IntConsumer progress;
+    private final int maxFanIn;
+    private final Pending[] run;
+    private int runLength;
+    private final ArrayDeque<Path> spilled;
+    private long count;
+
+    /**
+     * @param filePath the file path of the output text file
+     * @param progress called with the percentage (0 to 100) of entries written so far, each time it changes
+     */
+    public ExportWriter(String filePath, IntConsumer progress)
+    {
+        this(filePath, progress, RUN_SIZE, MAX_FAN_IN);
+    }
+
+    /**
+     * An export with other run sizes, e.g. tiny ones so that a test spills and merges with few entries.
+     * @param filePath the file path of the output text file
+     * @param progress called with the percentage (0 to 100) of entries written so far, each time it changes
+     * @param runSize number of entries sorted in memory before they are spilled
+     * @param maxFanIn most runs merged at once
+     * @throws IllegalArgumentException if runSize is not positive or maxFanIn is less than 2
+     */
+    ExportWriter(String filePath, IntConsumer progress, int runSize, int maxFanIn)
+    {
+        if(runSize <= 0)
+            throw new IllegalArgumentException("Run size must be positive: " + runSize);
+        if(maxFanIn < 2)
+            throw new IllegalArgumentException("Fan-in must be at least 2: " + maxFanIn);
+        this.target = Path.of(filePath).toAbsolutePath();
+        this.progress = progress;
+        this.maxFanIn = maxFanIn;
+        this.run = new Pending[runSize];
+        this.spilled = new ArrayDeque<Path>();
+    }
+
+    /**
+     * Adds an entry to the export. Its meaning is read either now or when finish is called, so the entry's meaning
+     * must stay readable until then.
+     * @param entry the entry to add
+     * @throws FileNotFoundError if a run cannot be spilled
+     */
+    public void add(WordEntry entry) throws FileNotFoundError
+    {
+        run[runLength++] = new Pending(entry, entry.getFrequencySearched());
+        count++;
+        if(runLength == run.length)
+        {
+            try
+            {
+                spill();
+            }
+            catch(IOException except)
+            {
+                deleteSpilled();
+                throw new FileNotFoundError();
+            }
+        }
+    }
+
+    /**
+     * Writes the output file from everything added and deletes the spilled runs. An export of no entries is an empty
+     * file.
+     * @throws FileNotFoundError if the output cannot be written or a spilled run cannot be read
+     */
+    public void finish() throws FileNotFoundError
+    {
+        try
+        {
+            // merge until a single pass can produce the output
+            while(spilled.size() + 1 > maxFanIn)
+            {
+                List<Run> sources = new ArrayList<Run>();
+                Iterator<Path> oldest = spilled.iterator();
+                for(int i = 0; i < maxFanIn; i++)
+                    sources.add(new SpilledRun(oldest.next()));
+                Path merged = Files.createTempFile(target.getParent(), "export", ".run");
+                try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(merged), BUFFER_SIZE)))
+                {
+                    merge(sources, source -> writeRun(out, source.frequency, source.word, source.meaning));
+                }
+                for(int i = 0; i < maxFanIn; i++)
+                    Files.delete(spilled.removeFirst());
+                spilled.addLast(merged);
+            }
+
+            List<Run> sources = new ArrayList<Run>();
+            for(Path file : spilled)
+                sources.add(new SpilledRun(file));
+            Pending[] last = Arrays.copyOf(run, runLength);
+            Arrays.sort(last, PENDING_ORDER);
+            sources.add(new MemoryRun(last));
+            writeOutput(sources);
+        }
+        catch(IOException except)
+        {
+            throw new FileNotFoundError();
+        }
+        finally
+        {
+            deleteSpilled();
+        }
+    }
+
+    /**
+     * Something that merged entries are written to.
+     */
+    private interface Sink
+    {
+        void accept(Run source) throws IOException;
+    }
+
+    // sorts the run in memory and writes it to a new spill file
+    private void spill() throws IOException
+    {
+        Arrays.sort(run, 0, runLength, PENDING_ORDER);
+        Path file = Files.createTempFile(target.getParent(), "export", ".run");
+        spilled.addLast(file);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file),
+                BUFFER_SIZE)))
+        {
+            for(int i = 0; i < runLength; i++)
+            {
+                WordEntry entry = run[i].entry();
+                writeRun(out, run[i].frequency(), entry.getWordName().getBytes(StandardCharsets.US_ASCII),
+                        entry.getWordMeaning().getBytes(StandardCharsets.UTF_8));
+                run[i] = null;
+            }
+        }
+        runLength = 0;
+    }
+
+    private static void writeRun(DataOutputStream out, int frequency, byte[] word, byte[] meaning) throws IOException
+    {
+        out.writeInt(frequency);
+        out.writeInt(word.length);
+        out.write(word);
+        out.writeInt(meaning.length);
+        out.write(meaning);
+    }
+
+    // hands the entries of all sources to the sink in order, closing the sources
+    private static void merge(List<Run> sources, Sink sink) throws IOException
+    {
+        PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1, sources.size()), RUN_ORDER);
+        try
+        {
+            for(Run source : sources)
+                if(source.next())
+                    queue.add(source);
+            while(!queue.isEmpty())
+            {
+                Run source = queue.poll();
+                sink.accept(source);
+                if(source.next())
+                    queue.add(source);
+            }
+        }
+        finally
+        {
+            for(Run source : sources)
+                source.close();
+        }
+    }
+
+    private void writeOutput(List<Run> sources) throws IOException
+    {
+        int[] percent = {0};
+        long[] written = {0};
+        progress.accept(0);
+        try(FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            byte[] digits = new byte[11];
+            merge(sources, source ->
+            {
+                if(written[0] > 0)
+                    put(out, buffer, SEPARATOR, 0, SEPARATOR.length);
+                put(out, buffer, source.word, 0, source.word.length);
+                buffer.put((byte) '\n');
+                int start = formatDecimal(source.frequency, digits);
+                put(out, buffer, digits, start, digits.length - start);
+                buffer.put((byte) '\n');
+                put(out, buffer, source.meaning, 0, source.meaning.length);
+
+                int newPercent = (int) (100 * ++written[0] / count);
+                if(newPercent != percent[0])
+                    progress.accept(percent[0] = newPercent);
+            });
+            buffer.flip();
+            while(buffer.hasRemaining())
+                out.write(buffer);
+        }
+        if(percent[0] != 100)
+            progress.accept(100);
+    }
+
+    // copies bytes into the buffer, writing it out whenever it fills up; leaves room for a newline after them
+    private static void put(FileChannel out, ByteBuffer buffer, byte[] bytes, int offset, int length)
+            throws IOException
+    {
+        while(length > 0)
+        {
+            if(buffer.remaining() <= 1)
+            {
+                buffer.flip();
+                while(buffer.hasRemaining())
+                    out.write(buffer);
+                buffer.clear();
+            }
+            int chunk = Math.min(length, buffer.remaining() - 1);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+        if(buffer.remaining() <= 1)
+        {
+            buffer.flip();
+            while(buffer.hasRemaining())
+                out.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    // writes a number's decimal digits at the end of the array and returns where they start
+    private static int formatDecimal(int value, byte[] digits)
+    {
+        int position = digits.length;
+        long remaining = Math.abs((long) value);
+        do
+        {
+            digits[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        while(remaining > 0);
+        if(value < 0)
+            digits[--position] = '-';
+        return position;
+    }
+
+    private void deleteSpilled()
+    {
+        for(Path file : spilled)
+        {
+            try
+            {
+                Files.deleteIfExists(file);
+            }
+            catch(IOException except)
+            {
+                // a leftover temporary file is not worth failing the export over
+            }
+        }
+        spilled.clear();
+    }
+}
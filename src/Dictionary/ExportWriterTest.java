@@ -0,0 +1,104 @@
+package Dictionary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Test for ExportWriter's external sort. With run sizes and fan-ins small enough that a few hundred entries are
+ * spilled to many runs and merged in several passes, the export must be exactly what writing a fully sorted list of
+ * the entries gives, and no spilled run may be left behind.
+ */
+public class ExportWriterTest
+{
+    private static final int[][] RUN_SIZES_AND_FAN_INS = {{1, 2}, {2, 2}, {3, 3}, {5, 2}, {7, 4}, {64, 64}};
+    private static final int[] ENTRY_COUNTS = {0, 1, 2, 6, 50, 333};
+
+    public static void main(String[] args) throws Exception
+    {
+        Path directory = Files.createTempDirectory("dictionary-export");
+        try
+        {
+            boolean passed = true;
+            Random random = new Random(42);
+            for(int[] sizes : RUN_SIZES_AND_FAN_INS)
+                for(int count : ENTRY_COUNTS)
+                    passed &= sameAsFullSort(directory, randomEntries(random, count), sizes[0], sizes[1]);
+            System.out.println("Export writer test " + (passed ? "passed" : "failed"));
+        }
+        finally
+        {
+            try(Stream<Path> files = Files.walk(directory))
+            {
+                for(Path file : files.sorted(Comparator.reverseOrder()).toList())
+                    Files.delete(file);
+            }
+        }
+    }
+
+    private static boolean sameAsFullSort(Path directory, List<WordEntry> entries, int runSize, int maxFanIn)
+            throws IOException
+    {
+        String name = entries.size() + " entries in runs of " + runSize + " merged " + maxFanIn + " at a time";
+        Path output = directory.resolve("export.txt");
+        List<Integer> percents = new ArrayList<Integer>();
+        ExportWriter writer = new ExportWriter(output.toString(), percents::add, runSize, maxFanIn);
+        for(WordEntry entry : entries)
+            writer.add(entry);
+        writer.finish();
+
+        List<WordEntry> sorted = new ArrayList<WordEntry>(entries);
+        sorted.sort(Comparator.comparingInt((WordEntry entry) -> -entry.getFrequencySearched())
+                .thenComparing(WordEntry::getWordName));
+        StringBuilder expected = new StringBuilder();
+        for(WordEntry entry : sorted)
+        {
+            if(expected.length() > 0)
+                expected.append('\n').append(System.lineSeparator());
+            expected.append(entry.getWordName()).append('\n').append(entry.getFrequencySearched()).append('\n')
+                    .append(entry.getWordMeaning());
+        }
+
+        boolean passed = true;
+        if(!expected.toString().equals(Files.readString(output, StandardCharsets.UTF_8)))
+        {
+            System.out.println(name + ": export differs from a full sort");
+            passed = false;
+        }
+        try(Stream<Path> files = Files.list(directory))
+        {
+            if(files.anyMatch(file -> !file.equals(output)))
+            {
+                System.out.println(name + ": spilled runs were left behind");
+                passed = false;
+            }
+        }
+        if(percents.isEmpty() || percents.get(percents.size() - 1) != 100)
+        {
+            System.out.println(name + ": progress ended at " + percents);
+            passed = false;
+        }
+        Files.delete(output);
+        return passed;
+    }
+
+    // few distinct frequencies, so that the order of ties by word is tested as well
+    private static List<WordEntry> randomEntries(Random random, int count)
+    {
+        Set<String> words = new HashSet<String>();
+        while(words.size() < count)
+        {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for(int i = 0; i < length; i++)
+                word.append((char) ('a' + random.nextInt(26)));
+            words.add(word.toString());
+        }
+        List<WordEntry> entries = new ArrayList<WordEntry>();
+        for(String word : words)
+            entries.add(new WordEntry(word, "meaning of " + word + "\nover two lines, café", random.nextInt(5)));
+        return entries;
+    }
+}
@@ -0,0 +1,175 @@
+package Dictionary;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Buffers FIND hits so that searches don't each write to the entries they return. A search only puts the entry into
+ * one of several ring buffers (picked by thread, so threads rarely share one), and a background task drains all
+ * buffers every interval, adding up the hits of each entry and handing each entry to the dictionary once with its
+ * total. Popular words are then written once per interval rather than once per search, and searching threads never
+ * contend on them. Searches still take the dictionary's read lock, though, and so does the drain while it applies
+ * the hits; only the writes are taken out of them.
+ * Hits are never dropped: a search that finds its buffer full records its hit itself, as if there were no buffer.
+ * Rankings therefore lag behind searches by at most about one interval (see
+ * DictionaryConfig.setFrequencyDrainInterval).
+ * All recorders share one daemon thread, which only holds on to a recorder weakly, so a dictionary that is no
+ * longer used is garbage collected along with its recorder.
+ */
+
+public class FrequencyRecorder
+{
+    public static final int STRIPE_CAPACITY = 256;
+
+    private static final ScheduledExecutorService DRAINER = Executors.newSingleThreadScheduledExecutor(task ->
+    {
+        Thread thread = new Thread(task, "dictionary frequency drain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A bounded ring buffer with many producers (searching threads) and one consumer (the drain).
+     */
+    private static class Stripe
+    {
+        final AtomicReferenceArray<WordEntry> slots = new AtomicReferenceArray<WordEntry>(STRIPE_CAPACITY);
+        // next slot to fill; slots are claimed by moving tail on, and filled in right after
+        final AtomicLong tail = new AtomicLong();
+        // next slot to drain, only moved by the drain
+        volatile long head;
+
+        boolean offer(WordEntry entry)
+        {
+            while(true)
+            {
+                long claimed = tail.get();
+                if(claimed - head >= STRIPE_CAPACITY)
+                    return false;
+                if(tail.compareAndSet(claimed, claimed + 1))
+                {
+                    slots.set((int) (claimed % STRIPE_CAPACITY), entry);
+                    return true;
+                }
+            }
+        }
+
+        void drainTo(Map<WordEntry, Integer> hits)
+        {
+            long next = head;
+            long end = tail.get();
+            while(next < end)
+            {
+                int slot = (int) (next % STRIPE_CAPACITY);
+                WordEntry entry = slots.get(slot);
+                // claimed but not filled in yet; the rest is picked up by the next drain
+                if(entry == null)
+                    break;
+                slots.set(slot, null);
+                hits.merge(entry, 1, Integer::sum);
+                next++;
+            }
+            head = next;
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final Runnable drain;
+    // hits counted per entry while draining, reused between drains
+    private final Map<WordEntry, Integer> hits;
+    private final long intervalMillis;
+
+    /**
+     * Creates a recorder, which is drained every interval once start is called.
+     * @param intervalMillis time between drains, in milliseconds
+     * @param drain called every interval, and expected to call drainTo (e.g. after taking a lock it needs)
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public FrequencyRecorder(long intervalMillis, Runnable drain)
+    {
+        if(intervalMillis <= 0)
+            throw new IllegalArgumentException("Drain interval must be positive: " + intervalMillis);
+        // a few stripes per core keeps threads that share one from queuing on it
+        int count = Integer.highestOneBit(Math.max(1, 4 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for(int i = 0; i < count; i++)
+            stripes[i] = new Stripe();
+        this.drain = drain;
+        this.hits = new IdentityHashMap<WordEntry, Integer>();
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Starts draining the buffers every interval.
+     */
+    public void start()
+    {
+        schedule(new WeakReference<FrequencyRecorder>(this), intervalMillis);
+    }
+
+    /**
+     * Buffers a hit on an entry.
+     * @param entry the entry that was returned by a search
+     * @return false if the buffer was full, in which case the caller must record the hit itself
+     */
+    public boolean offer(WordEntry entry)
+    {
+        long thread = Thread.currentThread().threadId();
+        // spread consecutive thread ids over the stripes
+        int stripe = (int) ((thread * 0x9E3779B97F4A7C15L) >>> 32) & (stripes.length - 1);
+        return stripes[stripe].offer(entry);
+    }
+
+    /**
+     * Empties the buffers, handing every entry that was hit to sink once, with its number of hits.
+     * @param sink called with each entry and its number of hits
+     */
+    public synchronized void drainTo(ObjIntConsumer<WordEntry> sink)
+    {
+        for(Stripe stripe : stripes)
+            stripe.drainTo(hits);
+        try
+        {
+            for(Map.Entry<WordEntry, Integer> hit : hits.entrySet())
+                sink.accept(hit.getKey(), hit.getValue());
+        }
+        finally
+        {
+            hits.clear();
+        }
+    }
+
+    /**
+     * Drains the buffers now rather than at the next interval, e.g. so that a ranking reflects every search so far.
+     */
+    public void flush()
+    {
+        drain.run();
+    }
+
+    // runs the drain every interval for as long as the recorder is in use
+    private static void schedule(WeakReference<FrequencyRecorder> recorder, long intervalMillis)
+    {
+        DRAINER.schedule(() ->
+        {
+            FrequencyRecorder current = recorder.get();
+            if(current == null)
+                return;
+            try
+            {
+                current.drain.run();
+            }
+            finally
+            {
+                schedule(recorder, intervalMillis);
+            }
+        }, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+}
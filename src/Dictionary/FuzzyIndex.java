@@ -0,0 +1,320 @@
+package Dictionary;
+
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Index for finding the words within a small edit distance of a misspelled query (a symmetric delete index, as in
+ * SymSpell). Every word is indexed under all the strings obtained by deleting up to maxDistance letters from its first
+ * PREFIX_LENGTH letters. Two words within maxDistance of each other always share such a delete, so a lookup only has
+ * to generate the deletes of the query (a few dozen strings), collect the words indexed under them and check each
+ * candidate's real distance. No other word in the dictionary is looked at, which keeps lookups well under a
+ * millisecond even for a million words.
+ * The distance is the optimal string alignment distance: insertions, deletions, substitutions and swaps of two
+ * adjacent letters each count as one edit.
+ * To keep the index small, deletes are kept as hash codes in an open addressing table whose entries point into
+ * linked posting lists stored in int arrays. Hash collisions only add candidates, which the distance check removes.
+ * Thread safety follows DictionaryLogic's lock: add, remove and clear need the write lock, while lookups only read
+ * and may run concurrently under the read lock.
+ */
+
+public class FuzzyIndex
+{
+    /**
+     * Only this many letters at the start of a word are used to generate its deletes.
+     */
+    public static final int PREFIX_LENGTH = 7;
+
+    private static final int NONE = -1;
+    // a table slot that has never been used (a slot whose posting list became empty is NONE)
+    private static final int EMPTY = -2;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxDistance;
+
+    // words by id; ids of removed words are reused
+    private final Map<String, Integer> ids;
+    private String[] words;
+    private int wordCount;
+    private final ArrayDeque<Integer> freeIds;
+
+    // delete hash -> first posting, open addressing with linear probing
+    private int[] slotHash;
+    private int[] slotHead;
+    private int usedSlots;
+
+    // postings: word id and next posting in the same list; freed postings are chained through postingNext
+    private int[] postingWord;
+    private int[] postingNext;
+    private int postingCount;
+    private int freePosting;
+
+    /**
+     * @param maxDistance largest edit distance that can be looked up
+     * @throws IllegalArgumentException if maxDistance is not positive
+     */
+    public FuzzyIndex(int maxDistance)
+    {
+        if(maxDistance <= 0)
+            throw new IllegalArgumentException("Maximum distance must be positive: " + maxDistance);
+        this.maxDistance = maxDistance;
+        this.ids = new HashMap<String, Integer>();
+        this.words = new String[INITIAL_CAPACITY];
+        this.freeIds = new ArrayDeque<Integer>();
+        this.slotHash = new int[INITIAL_CAPACITY];
+        this.slotHead = new int[INITIAL_CAPACITY];
+        Arrays.fill(slotHead, EMPTY);
+        this.postingWord = new int[INITIAL_CAPACITY];
+        this.postingNext = new int[INITIAL_CAPACITY];
+        this.freePosting = NONE;
+    }
+
+    public int getMaxDistance()
+    {
+        return maxDistance;
+    }
+
+    /**
+     * Indexes a word under all of its deletes.
+     * @param word word to index
+     */
+    public void add(String word)
+    {
+        if(ids.containsKey(word))
+            return;
+        int id;
+        if(freeIds.isEmpty())
+        {
+            if(wordCount == words.length)
+                words = Arrays.copyOf(words, words.length * 2);
+            id = wordCount++;
+        }
+        else
+            id = freeIds.pop();
+        words[id] = word;
+        ids.put(word, id);
+
+        for(String delete : deletesOf(word))
+        {
+            int slot = slotFor(delete.hashCode());
+            int posting = allocatePosting();
+            postingWord[posting] = id;
+            postingNext[posting] = (slotHead[slot] == EMPTY) ? NONE : slotHead[slot];
+            slotHead[slot] = posting;
+        }
+    }
+
+    /**
+     * Removes a word from the index.
+     * @param word word to remove
+     */
+    public void remove(String word)
+    {
+        Integer id = ids.remove(word);
+        if(id == null)
+            return;
+        for(String delete : deletesOf(word))
+        {
+            int slot = findSlot(delete.hashCode());
+            if(slot == NONE)
+                continue;
+            int previous = NONE;
+            for(int posting = slotHead[slot]; posting != NONE; posting = postingNext[posting])
+            {
+                if(postingWord[posting] != id)
+                {
+                    previous = posting;
+                    continue;
+                }
+                if(previous == NONE)
+                    slotHead[slot] = postingNext[posting];
+                else
+                    postingNext[previous] = postingNext[posting];
+                postingNext[posting] = freePosting;
+                freePosting = posting;
+                break;
+            }
+        }
+        words[id] = null;
+        freeIds.push(id);
+    }
+
+    /**
+     * Removes every word from the index.
+     */
+    public void clear()
+    {
+        ids.clear();
+        Arrays.fill(words, null);
+        wordCount = 0;
+        freeIds.clear();
+        Arrays.fill(slotHead, EMPTY);
+        usedSlots = 0;
+        postingCount = 0;
+        freePosting = NONE;
+    }
+
+    /**
+     * Finds every indexed word within a distance of the query, including the query itself if it is indexed.
+     * @param query the (possibly misspelled) word
+     * @param distance largest distance to accept, at most getMaxDistance()
+     * @param match called with each word found and its distance from the query
+     */
+    public void lookup(String query, int distance, ObjIntConsumer<String> match)
+    {
+        distance = Math.min(distance, maxDistance);
+        Set<Integer> seen = new HashSet<Integer>();
+        for(String delete : deletesOf(query))
+        {
+            int slot = findSlot(delete.hashCode());
+            if(slot == NONE)
+                continue;
+            for(int posting = slotHead[slot]; posting != NONE; posting = postingNext[posting])
+            {
+                int id = postingWord[posting];
+                if(!seen.add(id))
+                    continue;
+                int found = distance(query, words[id], distance);
+                if(found <= distance)
+                    match.accept(words[id], found);
+            }
+        }
+    }
+
+    /**
+     * Optimal string alignment distance between two words, giving up once it is certain to exceed a limit.
+     * @param a a word
+     * @param b another word
+     * @param limit largest distance of interest
+     * @return the distance, or limit + 1 if it is larger than limit
+     */
+    static int distance(String a, String b, int limit)
+    {
+        if(Math.abs(a.length() - b.length()) > limit)
+            return limit + 1;
+        // three rows of the usual dynamic programming table: two rows back (for swaps), the last one and this one
+        int[] beforeLast = new int[b.length() + 1];
+        int[] last = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for(int j = 0; j <= b.length(); j++)
+            last[j] = j;
+        for(int i = 1; i <= a.length(); i++)
+        {
+            current[0] = i;
+            int rowMin = i;
+            for(int j = 1; j <= b.length(); j++)
+            {
+                int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+                int value = Math.min(Math.min(last[j] + 1, current[j - 1] + 1), last[j - 1] + cost);
+                if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    value = Math.min(value, beforeLast[j - 2] + 1);
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            // every later row is at least the minimum of this one
+            if(rowMin > limit)
+                return limit + 1;
+            int[] recycled = beforeLast;
+            beforeLast = last;
+            last = current;
+            current = recycled;
+        }
+        return Math.min(last[b.length()], limit + 1);
+    }
+
+    // the word's prefix with every combination of up to maxDistance letters deleted (including none)
+    private Set<String> deletesOf(String word)
+    {
+        Set<String> deletes = new HashSet<String>();
+        String prefix = (word.length() > PREFIX_LENGTH) ? word.substring(0, PREFIX_LENGTH) : word;
+        deletes.add(prefix);
+        List<String> level = List.of(prefix);
+        for(int edits = 1; edits <= maxDistance; edits++)
+        {
+            List<String> next = new ArrayList<String>();
+            for(String from : level)
+                for(int i = 0; i < from.length(); i++)
+                {
+                    String delete = from.substring(0, i) + from.substring(i + 1);
+                    if(deletes.add(delete))
+                        next.add(delete);
+                }
+            level = next;
+        }
+        return deletes;
+    }
+
+    private int findSlot(int hash)
+    {
+        int mask = slotHash.length - 1;
+        for(int slot = mix(hash) & mask; slotHead[slot] != EMPTY; slot = (slot + 1) & mask)
+            if(slotHash[slot] == hash)
+                return slot;
+        return NONE;
+    }
+
+    // the slot for a hash, claiming an empty one if the hash isn't in the table yet
+    private int slotFor(int hash)
+    {
+        int slot = findSlot(hash);
+        if(slot != NONE)
+            return slot;
+        // keep the table at most half full so that probe sequences stay short
+        if(2 * (usedSlots + 1) > slotHash.length)
+            growTable();
+        int mask = slotHash.length - 1;
+        slot = mix(hash) & mask;
+        while(slotHead[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+        slotHash[slot] = hash;
+        slotHead[slot] = NONE;
+        usedSlots++;
+        return slot;
+    }
+
+    private void growTable()
+    {
+        int[] oldHash = slotHash;
+        int[] oldHead = slotHead;
+        slotHash = new int[oldHash.length * 2];
+        slotHead = new int[oldHash.length * 2];
+        Arrays.fill(slotHead, EMPTY);
+        usedSlots = 0;
+        int mask = slotHash.length - 1;
+        for(int i = 0; i < oldHash.length; i++)
+        {
+            // slots whose lists emptied out are dropped here
+            if(oldHead[i] == EMPTY || oldHead[i] == NONE)
+                continue;
+            int slot = mix(oldHash[i]) & mask;
+            while(slotHead[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            slotHash[slot] = oldHash[i];
+            slotHead[slot] = oldHead[i];
+            usedSlots++;
+        }
+    }
+
+    private int allocatePosting()
+    {
+        if(freePosting != NONE)
+        {
+            int posting = freePosting;
+            freePosting = postingNext[posting];
+            return posting;
+        }
+        if(postingCount == postingWord.length)
+        {
+            postingWord = Arrays.copyOf(postingWord, postingWord.length * 2);
+            postingNext = Arrays.copyOf(postingNext, postingNext.length * 2);
+        }
+        return postingCount++;
+    }
+
+    // String hash codes of similar strings differ in few bits, so spread them before masking
+    private static int mix(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
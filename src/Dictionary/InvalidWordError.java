@@ -3,4 +3,9 @@ package Dictionary;
 public class InvalidWordError extends RuntimeException
 {
     public InvalidWordError(String word) { super("The word " + word + " is not a valid word."); }
+
+    public InvalidWordError(String word, long line)
+    {
+        super("The word " + word + " on line " + line + " is not a valid word.");
+    }
 }
@@ -0,0 +1,10 @@
+package Dictionary;
+
+/**
+ * This exception is thrown when the journal of changes (see DictionaryJournal) cannot be written, so changes made
+ * from then on would be lost in a crash.
+ */
+public class JournalError extends RuntimeException
+{
+    public JournalError(String reason) { super("The journal could not be written: " + reason); }
+}
@@ -0,0 +1,288 @@
+package Dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Crash recovery test for DictionaryJournal as used by DictionaryLogic. A journal is cut short or corrupted inside
+ * each of its records in turn, and the dictionary recovered from it must be exactly the one as of the record before.
+ * Compaction must leave a journal that recovers the same dictionary, including when a crash left the set aside
+ * ".old" journal behind before or after the new snapshot was written.
+ */
+public class JournalRecoveryTest
+{
+    private static final int STEPS = 300;
+    // magic (8 bytes) and version (int), and each record's length and checksum (ints), as in DictionaryJournal
+    private static final int HEADER_SIZE = 8 + 4;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+
+    public static void main(String[] args) throws Exception
+    {
+        Path directory = Files.createTempDirectory("dictionary-journal");
+        try
+        {
+            boolean passed = tornAndCorruptRecords(directory);
+            passed &= compaction(directory);
+            passed &= unfinishedCompaction(directory);
+            System.out.println("Journal recovery test " + (passed ? "passed" : "failed"));
+        }
+        finally
+        {
+            try(Stream<Path> files = Files.walk(directory))
+            {
+                for(Path file : files.sorted(Comparator.reverseOrder()).toList())
+                    Files.delete(file);
+            }
+        }
+    }
+
+    private static boolean tornAndCorruptRecords(Path directory) throws IOException
+    {
+        Path snapshot = directory.resolve("dictionary.snapshot");
+        Path journal = directory.resolve("dictionary.journal");
+        DictionaryLogic logic = seeded();
+        logic.openJournal(snapshot.toString(), journal.toString(), DictionaryJournal.SyncPolicy.ALWAYS);
+        // states.get(i) is the dictionary as of the first i records
+        List<String> states = new ArrayList<String>();
+        states.add(describe(logic));
+        run(logic, new Random(42), STEPS, states);
+        logic.closeJournal();
+
+        byte[] snapshotBytes = Files.readAllBytes(snapshot);
+        byte[] journalBytes = Files.readAllBytes(journal);
+        List<Integer> ends = recordEnds(journalBytes);
+        if(ends.size() != states.size() - 1)
+        {
+            System.out.println("Journal has " + ends.size() + " records for " + (states.size() - 1) + " changes");
+            return false;
+        }
+
+        Random random = new Random(7);
+        Path recovery = directory.resolve("recovery");
+        for(int i = 0; i < ends.size(); i++)
+        {
+            int start = (i == 0) ? HEADER_SIZE : ends.get(i - 1);
+            int end = ends.get(i);
+
+            // a crash while the record was being written leaves any part of it
+            byte[] torn = Arrays.copyOf(journalBytes, start + 1 + random.nextInt(end - start - 1));
+            if(!recovers("Record " + i + " torn", states.get(i), recovery, snapshotBytes, torn, null))
+                return false;
+
+            // a flipped bit in the checksum or body stops replay there, even with intact records after it
+            byte[] corrupt = journalBytes.clone();
+            corrupt[start + 4 + random.nextInt(end - start - 4)] ^= (byte) (1 << random.nextInt(8));
+            if(!recovers("Record " + i + " corrupt", states.get(i), recovery, snapshotBytes, corrupt, null))
+                return false;
+
+            byte[] whole = Arrays.copyOf(journalBytes, end);
+            if(!recovers("Record " + i + " whole", states.get(i + 1), recovery, snapshotBytes, whole, null))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean compaction(Path directory) throws IOException
+    {
+        Path snapshot = directory.resolve("compacted.snapshot");
+        Path journal = directory.resolve("compacted.journal");
+        Path old = directory.resolve("compacted.journal.old");
+        DictionaryLogic logic = seeded();
+        logic.openJournal(snapshot.toString(), journal.toString(), DictionaryJournal.SyncPolicy.ALWAYS);
+        Random random = new Random(43);
+
+        run(logic, random, STEPS, new ArrayList<String>());
+        logic.checkpoint();
+        if(Files.exists(old) || Files.size(journal) != HEADER_SIZE)
+        {
+            System.out.println("Compaction left " + Files.size(journal) + " bytes of journal behind");
+            return false;
+        }
+
+        run(logic, random, STEPS, new ArrayList<String>());
+        // a change waits for its record, and so for every record before it, so the copy is complete
+        logic.addWord("checkpoint", "marks the end of the journal");
+        byte[] setAside = Files.readAllBytes(journal);
+        byte[] secondSnapshot = Files.readAllBytes(snapshot);
+        logic.checkpoint();
+        byte[] thirdSnapshot = Files.readAllBytes(snapshot);
+
+        run(logic, random, STEPS, new ArrayList<String>());
+        logic.closeJournal();
+        byte[] last = Files.readAllBytes(journal);
+        String expected = describe(logic);
+
+        Path recovery = directory.resolve("recovery");
+        boolean passed = recovers("Compacted", expected, recovery, thirdSnapshot, last, null);
+        // the crash came after rollOver, before or after the new snapshot replaced the old one
+        passed &= recovers("Crash before snapshot", expected, recovery, secondSnapshot, last, setAside);
+        passed &= recovers("Crash before deleteOld", expected, recovery, thirdSnapshot, last, setAside);
+        return passed;
+    }
+
+    private static boolean unfinishedCompaction(Path directory) throws IOException
+    {
+        Path journalPath = directory.resolve("unfinished.journal");
+        DictionaryJournal journal = new DictionaryJournal(journalPath.toString(), DictionaryJournal.SyncPolicy.ALWAYS,
+                () -> {});
+        journal.add("apple", "a fruit");
+        journal.rollOver();
+        // without deleteOld, the second rollOver has to add to the ".old" file rather than replace it
+        journal.add("banana", "another fruit");
+        journal.rollOver();
+        journal.frequency("apple", 3);
+        journal.rename("banana", "bananas", "more fruit", 2);
+        journal.close();
+
+        List<String> replayed = new ArrayList<String>();
+        DictionaryJournal.replay(journalPath.toString(), new DictionaryJournal.Replayer()
+        {
+            @Override
+            public void add(String word, String meaning)
+            {
+                replayed.add("add " + word + " " + meaning);
+            }
+
+            @Override
+            public void remove(String word)
+            {
+                replayed.add("remove " + word);
+            }
+
+            @Override
+            public void rename(String oldWord, String newWord, String meaning, int frequency)
+            {
+                replayed.add("rename " + oldWord + " " + newWord + " " + meaning + " " + frequency);
+            }
+
+            @Override
+            public void frequency(String word, int frequency)
+            {
+                replayed.add("frequency " + word + " " + frequency);
+            }
+
+            @Override
+            public void clear()
+            {
+                replayed.add("clear");
+            }
+        });
+        List<String> expected = List.of("add apple a fruit", "add banana another fruit", "frequency apple 3",
+                "rename banana bananas more fruit 2");
+        if(!replayed.equals(expected))
+        {
+            System.out.println("Unfinished compaction replayed " + replayed);
+            return false;
+        }
+        return true;
+    }
+
+    // words that are in the snapshot written when the journal is opened
+    private static DictionaryLogic seeded()
+    {
+        DictionaryLogic logic = new DictionaryLogic();
+        Random random = new Random(1);
+        for(int i = 0; i < 20; i++)
+        {
+            String word = TestWords.randomWord(random);
+            if(logic.findWord(word) == null)
+                logic.addWord(word, "seeded " + word);
+        }
+        return logic;
+    }
+
+    // random changes and searches, each journaled as exactly one record unless it fails or finds nothing
+    private static void run(DictionaryLogic logic, Random random, int steps, List<String> states)
+    {
+        for(int i = 0; i < steps; i++)
+        {
+            String word = TestWords.randomWord(random);
+            String other = TestWords.randomWord(random);
+            try
+            {
+                switch(random.nextInt(4))
+                {
+                    case 0:
+                        logic.addWord(word, "meaning " + i);
+                        break;
+                    case 1:
+                        logic.removeWord(word);
+                        break;
+                    case 2:
+                        if(other.equals(word))
+                            continue;
+                        logic.modifyMeaning(other, word);
+                        break;
+                    default:
+                        if(logic.findWordByFreq(word.substring(0, 1), 1).isEmpty())
+                            continue;
+                }
+            }
+            catch(WordDuplicatedError | WordNotFoundError expected)
+            {
+                continue;
+            }
+            states.add(describe(logic));
+        }
+    }
+
+    // recovers a dictionary from the given files (old may be null) and compares it with the expected one
+    private static boolean recovers(String name, String expected, Path directory, byte[] snapshot, byte[] journal,
+                                    byte[] old) throws IOException
+    {
+        Files.createDirectories(directory);
+        Path snapshotPath = directory.resolve("recovered.snapshot");
+        Path journalPath = directory.resolve("recovered.journal");
+        Path oldPath = directory.resolve("recovered.journal.old");
+        Files.write(snapshotPath, snapshot);
+        Files.write(journalPath, journal);
+        Files.deleteIfExists(oldPath);
+        if(old != null)
+            Files.write(oldPath, old);
+
+        DictionaryLogic recovered = new DictionaryLogic();
+        recovered.openJournal(snapshotPath.toString(), journalPath.toString(), DictionaryJournal.SyncPolicy.NEVER);
+        recovered.closeJournal();
+        String actual = describe(recovered);
+        if(!expected.equals(actual))
+        {
+            System.out.println(name + ": recovered " + actual + " instead of " + expected);
+            return false;
+        }
+        return true;
+    }
+
+    // the offset just past each complete record
+    private static List<Integer> recordEnds(byte[] journal)
+    {
+        List<Integer> ends = new ArrayList<Integer>();
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+        int position = HEADER_SIZE;
+        while(position + RECORD_HEADER_SIZE <= journal.length)
+        {
+            position += RECORD_HEADER_SIZE + buffer.getInt(position);
+            ends.add(position);
+        }
+        return ends;
+    }
+
+    private static String describe(DictionaryLogic logic)
+    {
+        List<String> words = new ArrayList<String>();
+        logic.readLock().lock();
+        try
+        {
+            for(WordEntry entry : logic.entries())
+                words.add(entry.getWordName() + "=" + entry.getWordMeaning() + "/" + entry.getFrequencySearched());
+        }
+        finally
+        {
+            logic.readLock().unlock();
+        }
+        Collections.sort(words);
+        return words.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package Dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap storage for word meanings. Meanings are encoded as UTF-8 into large direct ByteBuffers (slabs) outside the
+ * Java heap, and a WordEntry only keeps the address (slab number and offset) and length of its bytes. The text is
+ * decoded again each time getWordMeaning is called. With millions of entries, this takes millions of String objects
+ * off the heap, which keeps the heap small and garbage collection short.
+ * Space is handed out by bumping a pointer through the current slab. Freed meanings just count as dead space; when
+ * dead space makes up most of the arena, compact() copies the live meanings into fresh slabs and lets the old ones be
+ * garbage collected.
+ * The Foreign Memory API would allow one huge segment instead of slabs, but it is still a preview feature on the JDK
+ * this project targets, so direct ByteBuffers are used.
+ */
+
+public class MeaningArena
+{
+    public static final int SLAB_SIZE = 16 << 20;
+
+    private List<ByteBuffer> slabs;
+    private int slabOffset;
+    private long liveBytes;
+    private long deadBytes;
+
+    // readers decode under the read lock, so compaction (write lock) can never move bytes out from under them
+    private final ReentrantReadWriteLock lock;
+
+    public MeaningArena()
+    {
+        this.slabs = new ArrayList<ByteBuffer>();
+        this.slabOffset = SLAB_SIZE;
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Copies a meaning into the arena.
+     * @param meaning the meaning to store
+     * @param entry the entry the meaning belongs to, which is given the address and length of the stored bytes
+     */
+    public void store(String meaning, WordEntry entry)
+    {
+        byte[] bytes = meaning.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try
+        {
+            entry.setMeaningLocation(this, allocate(bytes), bytes.length);
+            liveBytes += bytes.length;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes the meaning of an entry stored in this arena.
+     * @param entry an entry whose meaning was stored here
+     * @return the meaning
+     */
+    public String read(WordEntry entry)
+    {
+        lock.readLock().lock();
+        try
+        {
+            // an entry that was released while this thread waited for the lock has its meaning on the heap again
+            if(entry.getMeaningArena() != this)
+                return entry.getWordMeaning();
+            long address = entry.getMeaningAddress();
+            byte[] bytes = new byte[entry.getMeaningLength()];
+            slabs.get((int) (address >>> 32)).get((int) address, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks an entry's meaning bytes as dead. The entry itself gets a heap copy of its meaning first, since a caller
+     * may still hold on to it after it left the dictionary and compaction won't keep its bytes.
+     * @param entry an entry whose meaning was stored here and which is no longer in the dictionary
+     */
+    public void release(WordEntry entry)
+    {
+        String meaning = read(entry);
+        lock.writeLock().lock();
+        try
+        {
+            entry.setMeaningOnHeap(meaning);
+            liveBytes -= entry.getMeaningLength();
+            deadBytes += entry.getMeaningLength();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gives an entry a heap copy of its meaning without freeing the bytes, for when another (renamed) entry now
+     * shares them.
+     * @param entry an entry whose meaning was stored here and which is no longer in the dictionary
+     */
+    public void detach(WordEntry entry)
+    {
+        String meaning = read(entry);
+        lock.writeLock().lock();
+        try
+        {
+            entry.setMeaningOnHeap(meaning);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the arena if at least half of the space handed out is dead and that is more than one slab's worth.
+     * @param liveEntries every entry whose meaning is still stored here
+     * @return true if the arena was compacted
+     */
+    public boolean compactIfWasteful(Iterable<WordEntry> liveEntries)
+    {
+        lock.readLock().lock();
+        try
+        {
+            if(deadBytes < liveBytes || deadBytes < SLAB_SIZE)
+                return false;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        compact(liveEntries);
+        return true;
+    }
+
+    /**
+     * Copies the meanings of the live entries into fresh slabs, dropping all dead space.
+     * @param liveEntries every entry whose meaning is still stored here
+     */
+    public void compact(Iterable<WordEntry> liveEntries)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            List<ByteBuffer> oldSlabs = slabs;
+            slabs = new ArrayList<ByteBuffer>();
+            slabOffset = SLAB_SIZE;
+            liveBytes = 0;
+            deadBytes = 0;
+
+            for(WordEntry entry : liveEntries)
+            {
+                if(entry.getMeaningArena() != this)
+                    continue;
+                long address = entry.getMeaningAddress();
+                byte[] bytes = new byte[entry.getMeaningLength()];
+                oldSlabs.get((int) (address >>> 32)).get((int) address, bytes);
+                entry.setMeaningLocation(this, allocate(bytes), bytes.length);
+                liveBytes += bytes.length;
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes of meanings still in use
+     */
+    public long getLiveBytes()
+    {
+        return liveBytes;
+    }
+
+    /**
+     * @return bytes of released meanings that compaction would reclaim
+     */
+    public long getDeadBytes()
+    {
+        return deadBytes;
+    }
+
+    // copies bytes into the current slab (starting a new one if needed) and returns their address; needs the write
+    // lock. Meanings larger than a slab get a slab of their own.
+    private long allocate(byte[] bytes)
+    {
+        if(slabs.isEmpty() || bytes.length > SLAB_SIZE - slabOffset)
+        {
+            slabs.add(ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, bytes.length)));
+            slabOffset = 0;
+        }
+        int slab = slabs.size() - 1;
+        slabs.get(slab).put(slabOffset, bytes);
+        long address = ((long) slab << 32) | slabOffset;
+        slabOffset += bytes.length;
+        // nothing else fits in an oversized slab
+        if(slabs.get(slab).capacity() > SLAB_SIZE)
+            slabOffset = SLAB_SIZE;
+        return address;
+    }
+}
@@ -0,0 +1,82 @@
+package Dictionary;
+
+/**
+ * Exponential decay of search popularity: a search counts as 1 when it happens and half as much every half-life
+ * after, so words that were searched a lot long ago sink below words searched recently.
+ * Decaying every word's score as time passes would mean rescanning the dictionary. Instead, scores use forward decay:
+ * a search at time t adds e^(rate * (t - landmark)), for a landmark fixed when the decay is created. A word's decayed
+ * popularity at time now is its score times e^(-rate * (now - landmark)), the same factor for every word, so
+ * comparing scores compares decayed popularities at any time, and a score only changes when its word is searched.
+ * The scores themselves grow exponentially with time, so they are kept as logarithms, which grow linearly instead
+ * and never overflow.
+ */
+
+public class PopularityDecay
+{
+    private final long halfLifeMillis;
+    private final long landmark;
+    // decay rate per millisecond
+    private final double rate;
+
+    /**
+     * @param halfLifeMillis time after which a search counts half as much, in milliseconds
+     * @throws IllegalArgumentException if the half-life is not positive
+     */
+    public PopularityDecay(long halfLifeMillis)
+    {
+        if(halfLifeMillis <= 0)
+            throw new IllegalArgumentException("Half-life must be positive: " + halfLifeMillis);
+        this.halfLifeMillis = halfLifeMillis;
+        this.landmark = System.currentTimeMillis();
+        this.rate = Math.log(2) / halfLifeMillis;
+    }
+
+    public long getHalfLifeMillis()
+    {
+        return halfLifeMillis;
+    }
+
+    /**
+     * The logarithm of what a search made now adds to a score.
+     * @return the weight to pass to WordEntry.addPopularity
+     */
+    public double searchWeight()
+    {
+        return rate * (System.currentTimeMillis() - landmark);
+    }
+
+    /**
+     * The logarithm of what a number of searches made now add to a score, e.g. for counting the all-time frequency
+     * of a loaded word as popularity it had when it was loaded.
+     * @param searches number of searches, at least 1
+     * @return the weight to pass to WordEntry.addPopularity
+     */
+    public double searchWeight(int searches)
+    {
+        return Math.log(searches) + searchWeight();
+    }
+
+    /**
+     * The decayed popularity a score stands for: how many searches made just now it is worth.
+     * @param score a score from WordEntry.getPopularity
+     * @return the decayed number of searches
+     */
+    public double decayedSearches(double score)
+    {
+        return Math.exp(score - searchWeight());
+    }
+
+    /**
+     * Adds two scores kept as logarithms, i.e. log(e^a + e^b), without leaving the logarithms.
+     * @param a a score
+     * @param b another score
+     * @return the logarithm of the sum
+     */
+    static double add(double a, double b)
+    {
+        double larger = Math.max(a, b);
+        if(larger == Double.NEGATIVE_INFINITY)
+            return larger;
+        return larger + Math.log1p(Math.exp(Math.min(a, b) - larger));
+    }
+}
@@ -0,0 +1,440 @@
+package Dictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of findWordByFreq results, keyed by the query, evicting the least recently used query when full.
+ * A result only depends on the words containing its query, so adding or removing a word only invalidates the
+ * queries that are substrings of it (wordChanged); everything else stays cached. A search hit is just as local: it
+ * only raises one word, which can only move that word up in the results of the queries it contains, or into them
+ * past their last word. With a staleness window of 0, wordHit makes exactly that change to those results, so they
+ * stay exact and keep being reused. With a window, hits are ignored and a result is reused for the window after it
+ * was computed, ranking words by frequencies that may be that old.
+ * The queries are spread over stripes by their hash, each with its own lock and its own share of the capacity (so
+ * the least recently used query is evicted per stripe), so that searches for different queries don't wait for each
+ * other. A stripe's lock is only held for map operations: results are never changed in place, wordHit replaces them
+ * with a reordered copy, so a lookup copies its result after letting go of the lock.
+ * Callers are expected to look up and store results under the dictionary's read lock and to report changes under
+ * its write lock, so that a result computed before a change is never stored after it. Hits are reported under the
+ * read lock, alongside searches, so a result is computed between begin and finish: one that a hit may have overtaken
+ * meanwhile isn't stored.
+ */
+
+public class QueryCache
+{
+    private static final int STRIPES = 16;
+    // a smaller cache has fewer stripes, so that evicting per stripe stays close to evicting the least recent query
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    /**
+     * A cached result: the top words of the query for some k, which also answers any smaller k. The list is in rank
+     * order and never changes.
+     */
+    private static class Result
+    {
+        final List<WordEntry> top;
+        final int k;
+        final long computedNanos;
+
+        Result(List<WordEntry> top, int k, long computedNanos)
+        {
+            this.top = top;
+            this.k = k;
+            this.computedNanos = computedNanos;
+        }
+    }
+
+    /**
+     * A result being computed, from begin to finish. It is only stored if no change or hit touched its query
+     * meanwhile.
+     */
+    public static class Computation
+    {
+        private final String query;
+        private boolean touched;
+
+        private Computation(String query)
+        {
+            this.query = query;
+        }
+    }
+
+    /**
+     * The cached and running queries of one stripe, guarded by the stripe's monitor.
+     */
+    private class Stripe
+    {
+        final LinkedHashMap<String, Result> results;
+        // results being computed, by query; several threads may be computing the same query
+        final Map<String, List<Computation>> computing;
+
+        Stripe(int capacity)
+        {
+            this.results = new LinkedHashMap<String, Result>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Result> eldest)
+                {
+                    if(size() <= capacity)
+                        return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+            this.computing = new HashMap<String, List<Computation>>();
+        }
+    }
+
+    private final int capacity;
+    private final long stalenessNanos;
+    private final Stripe[] stripes;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    /**
+     * @param capacity most queries to keep
+     * @param stalenessMillis how long a result may ignore frequency changes, in milliseconds (0 for never)
+     * @throws IllegalArgumentException if the capacity is not positive or the window is negative
+     */
+    public QueryCache(int capacity, long stalenessMillis)
+    {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        if(stalenessMillis < 0)
+            throw new IllegalArgumentException("Staleness window must not be negative: " + stalenessMillis);
+        this.capacity = capacity;
+        this.stalenessNanos = stalenessMillis * 1_000_000;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+
+        // a power of two, so that a hash picks a stripe with a mask; the capacity is shared out as evenly as it goes
+        int count = Math.min(STRIPES, Integer.highestOneBit(Math.max(1, capacity / MIN_STRIPE_CAPACITY)));
+        this.stripes = new Stripe[count];
+        for(int i = 0; i < count; i++)
+            stripes[i] = new Stripe(capacity / count + ((i < capacity % count) ? 1 : 0));
+    }
+
+    /**
+     * Looks up the top k words of a query.
+     * @param query the query, as a dictionary key
+     * @param k number of words wanted
+     * @return a new list of the top k words, or null if they aren't cached (or are stale)
+     */
+    public List<WordEntry> get(String query, int k)
+    {
+        Stripe stripe = stripes[stripeOf(query)];
+        Result result;
+        synchronized(stripe)
+        {
+            result = stripe.results.get(query);
+        }
+        // a result for a smaller k can't answer k, unless it found fewer words than it asked for (all there are)
+        if(result == null || (result.k < k && result.top.size() == result.k) || isStale(result))
+        {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new ArrayList<WordEntry>(result.top.subList(0, Math.min(k, result.top.size())));
+    }
+
+    /**
+     * Notes that the top words of a query are about to be computed, after get missed.
+     * @param query the query, as a dictionary key
+     * @return the computation, to be passed to finish
+     */
+    public Computation begin(String query)
+    {
+        Computation computation = new Computation(query);
+        Stripe stripe = stripes[stripeOf(query)];
+        synchronized(stripe)
+        {
+            stripe.computing.computeIfAbsent(query, running -> new ArrayList<Computation>(1)).add(computation);
+        }
+        return computation;
+    }
+
+    /**
+     * Stores the top k words of a query computed since begin, unless a change or hit may have made them wrong
+     * meanwhile.
+     * @param computation what begin returned
+     * @param k number of words asked for
+     * @param top the top words, at most k (copied), or null if computing them failed
+     */
+    public void finish(Computation computation, int k, List<WordEntry> top)
+    {
+        Result result = (top == null) ? null : new Result(List.copyOf(top), k, System.nanoTime());
+        Stripe stripe = stripes[stripeOf(computation.query)];
+        synchronized(stripe)
+        {
+            List<Computation> running = stripe.computing.get(computation.query);
+            running.remove(computation);
+            if(running.isEmpty())
+                stripe.computing.remove(computation.query);
+            if(result != null && !computation.touched)
+                stripe.results.put(computation.query, result);
+        }
+    }
+
+    /**
+     * Invalidates the results that may include a word that was added or removed: those of its substrings.
+     * @param key the word, as a dictionary key
+     */
+    public void wordChanged(String key)
+    {
+        Substrings substrings = new Substrings(key);
+        for(int i = 0; i < stripes.length; i++)
+        {
+            Stripe stripe = stripes[i];
+            synchronized(stripe)
+            {
+                touchComputations(stripe, substrings, i);
+                for(String query : queriesIn(stripe.results, substrings, i))
+                {
+                    stripe.results.remove(query);
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Notes that a word's frequency (and popularity) went up, and moves it up in the results of the queries it
+     * contains to match: within a result it is already in, or into a full one whose last word it now outranks. The
+     * results of other queries can't have changed. With a staleness window, hits are left for the window to pick
+     * up, so this does nothing.
+     * @param key the word, as a dictionary key
+     * @param entry the word's entry, with its new frequency
+     */
+    public void wordHit(String key, WordEntry entry)
+    {
+        if(stalenessNanos != 0)
+            return;
+        Substrings substrings = new Substrings(key);
+        for(int i = 0; i < stripes.length; i++)
+        {
+            Stripe stripe = stripes[i];
+            synchronized(stripe)
+            {
+                touchComputations(stripe, substrings, i);
+                for(String query : queriesIn(stripe.results, substrings, i))
+                {
+                    Result result = stripe.results.get(query);
+                    List<WordEntry> top = result.top;
+                    int position = top.indexOf(entry);
+                    boolean entering = position < 0;
+                    if(entering)
+                    {
+                        // a result that isn't full already lists every word containing its query
+                        if(top.size() < result.k)
+                        {
+                            stripe.results.remove(query);
+                            invalidations.increment();
+                            continue;
+                        }
+                        if(top.isEmpty() || entry.compareTo(top.get(top.size() - 1)) >= 0)
+                            continue;
+                        // it takes the place of the last word
+                        position = top.size() - 1;
+                    }
+                    // scores only ever go up, so the entry can only have overtaken the words ranked above it
+                    int newPosition = position;
+                    while(newPosition > 0 && entry.compareTo(top.get(newPosition - 1)) < 0)
+                        newPosition--;
+                    if(!entering && newPosition == position)
+                        continue;
+
+                    // lookups may still be copying the old list, so the reordered one is a new list
+                    List<WordEntry> reordered = new ArrayList<WordEntry>(top);
+                    reordered.remove(position);
+                    reordered.add(newPosition, entry);
+                    stripe.results.put(query, new Result(Collections.unmodifiableList(reordered), result.k,
+                            result.computedNanos));
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the cache, e.g. when the whole dictionary is replaced.
+     */
+    public void clear()
+    {
+        for(Stripe stripe : stripes)
+        {
+            synchronized(stripe)
+            {
+                invalidations.add(stripe.results.size());
+                stripe.results.clear();
+                for(List<Computation> running : stripe.computing.values())
+                    for(Computation computation : running)
+                        computation.touched = true;
+            }
+        }
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for(Stripe stripe : stripes)
+        {
+            synchronized(stripe)
+            {
+                size += stripe.results.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the share of lookups answered from the cache, from 0 to 1 (0 before the first lookup)
+     */
+    public double getHitRate()
+    {
+        long found = hits.sum();
+        long total = found + misses.sum();
+        return (total == 0) ? 0 : (double) found / total;
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount()
+    {
+        return invalidations.sum();
+    }
+
+    /**
+     * Sets the hit, miss, eviction and invalidation counts back to zero.
+     */
+    public void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        invalidations.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("query cache: %d of %d queries, hit rate %.1f%% (%d hits, %d misses), %d evictions, " +
+                "%d invalidations", size(), capacity, 100 * getHitRate(), getHitCount(), getMissCount(),
+                getEvictionCount(), getInvalidationCount());
+    }
+
+    private boolean isStale(Result result)
+    {
+        return stalenessNanos != 0 && System.nanoTime() - result.computedNanos > stalenessNanos;
+    }
+
+    private int stripeOf(String query)
+    {
+        int hash = query.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    // keeps the results being computed for the word's substrings from being stored; the stripe's lock must be held
+    private static void touchComputations(Stripe stripe, Substrings substrings, int index)
+    {
+        for(String query : queriesIn(stripe.computing, substrings, index))
+            for(Computation computation : stripe.computing.get(query))
+                computation.touched = true;
+    }
+
+    /**
+     * The distinct substrings of a word (including the empty one) by stripe, only listed once a stripe has too many
+     * queries to check each of them against the word.
+     */
+    private class Substrings
+    {
+        final String key;
+        final int count;
+        private List<List<String>> byStripe;
+
+        Substrings(String key)
+        {
+            this.key = key;
+            this.count = key.length() * (key.length() + 1) / 2 + 1;
+        }
+
+        List<String> inStripe(int index)
+        {
+            if(byStripe == null)
+            {
+                byStripe = new ArrayList<List<String>>(stripes.length);
+                for(int i = 0; i < stripes.length; i++)
+                    byStripe.add(new ArrayList<String>());
+                Set<String> listed = new HashSet<String>();
+                // the empty query is a substring of every word
+                listed.add("");
+                byStripe.get(stripeOf("")).add("");
+                for(int start = 0; start < key.length(); start++)
+                    for(int end = start + 1; end <= key.length(); end++)
+                    {
+                        String query = key.substring(start, end);
+                        // a repeated substring (e.g. "an" in "banana") is only listed once
+                        if(listed.add(query))
+                            byStripe.get(stripeOf(query)).add(query);
+                    }
+            }
+            return byStripe.get(index);
+        }
+    }
+
+    /**
+     * The keys of a stripe's map (cached or running queries) that are substrings of a word. Checks each key, or looks
+     * up the word's substrings when there are fewer of those. Must be called with the stripe's lock held.
+     * @param queries map keyed by query
+     * @param substrings the word's substrings
+     * @param index the stripe's number
+     * @return the queries found
+     */
+    private static List<String> queriesIn(Map<String, ?> queries, Substrings substrings, int index)
+    {
+        List<String> found = new ArrayList<String>();
+        if(queries.isEmpty())
+            return found;
+        if(queries.size() < substrings.count)
+        {
+            for(String query : queries.keySet())
+                if(substrings.key.contains(query))
+                    found.add(query);
+            return found;
+        }
+        for(String query : substrings.inStripe(index))
+            if(queries.containsKey(query))
+                found.add(query);
+        return found;
+    }
+}
@@ -0,0 +1,109 @@
+package Dictionary;
+
+import java.util.*;
+
+/**
+ * Test for QueryCache as used by DictionaryLogic. Repeated substring searches must be answered from the cache even
+ * though every search raises the frequencies of the words it returns, and a dictionary with the cache must rank
+ * exactly like one without it through random adds, renames, removes and searches (mostly searches, as in use).
+ */
+public class QueryCacheTest
+{
+    private static final int OPERATIONS = 50000;
+
+    public static void main(String[] args)
+    {
+        boolean passed = repeatedQueries();
+        passed &= sameRankings("Plain", new DictionaryConfig());
+        passed &= sameRankings("Ranked lists", new DictionaryConfig().setRankedListSize(2));
+        System.out.println("Query cache test " + (passed ? "passed" : "failed"));
+    }
+
+    private static boolean repeatedQueries()
+    {
+        DictionaryLogic logic = new DictionaryLogic(new DictionaryConfig().setQueryCacheSize(16));
+        for(String word : new String[] {"apple", "apply", "maple", "ample", "banana", "bandana", "cabana"})
+            logic.addWord(word, "meaning of " + word);
+
+        for(int i = 0; i < 20; i++)
+        {
+            logic.findWordByFreq("ple");
+            logic.findWordByFreq("ana");
+        }
+        QueryCache cache = logic.getQueryCache();
+        // only the first search for each query has to rank
+        if(cache.getMissCount() != 2 || cache.getHitCount() != 38)
+        {
+            System.out.println("Repeated queries: " + cache);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean sameRankings(String name, DictionaryConfig config)
+    {
+        DictionaryLogic plain = new DictionaryLogic(config);
+        DictionaryLogic cached = new DictionaryLogic(config.setQueryCacheSize(64));
+        Random random = new Random(42);
+        for(int i = 0; i < OPERATIONS; i++)
+        {
+            String word = TestWords.randomWord(random);
+            String other = TestWords.randomWord(random);
+            int k = 1 + random.nextInt(4);
+            String expected, actual;
+            switch(random.nextInt(20))
+            {
+                case 0:
+                    expected = apply(() -> plain.addWord(word, "meaning"));
+                    actual = apply(() -> cached.addWord(word, "meaning"));
+                    break;
+                case 1:
+                    expected = apply(() -> plain.removeWord(word));
+                    actual = apply(() -> cached.removeWord(word));
+                    break;
+                case 2:
+                    expected = apply(() -> plain.modifyMeaning(other, word));
+                    actual = apply(() -> cached.modifyMeaning(other, word));
+                    break;
+                default:
+                    // short queries, so that most of them are repeated and answered from the cache
+                    String query = word.substring(0, Math.min(word.length(), 2));
+                    expected = describe(plain.findWordByFreq(query, k));
+                    actual = describe(cached.findWordByFreq(query, k));
+            }
+            if(!expected.equals(actual))
+            {
+                System.out.println(name + ": operation " + i + " gave " + actual + " instead of " + expected);
+                return false;
+            }
+        }
+        if(cached.getQueryCache().getHitRate() < 0.5)
+        {
+            System.out.println(name + ": " + cached.getQueryCache());
+            return false;
+        }
+        return true;
+    }
+
+    // the error an operation threw, if any
+    private static String apply(Runnable operation)
+    {
+        try
+        {
+            operation.run();
+            return "";
+        }
+        catch(RuntimeException error)
+        {
+            return error.getClass().getSimpleName();
+        }
+    }
+
+    private static String describe(List<WordEntry> entries)
+    {
+        StringBuilder description = new StringBuilder();
+        for(WordEntry entry : entries)
+            description.append(entry.getWordName()).append('=').append(entry.getFrequencySearched()).append(' ');
+        return description.toString();
+    }
+}
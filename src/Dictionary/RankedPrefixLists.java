@@ -0,0 +1,59 @@
+package Dictionary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Precomputed completions. Like RankedSubstringLists, but the lists are kept per prefix (lengths 1 to PREFIX_LENGTH)
+ * instead of per substring, so the top k completions of a short prefix are a copy of the front of one list, no
+ * matter how many words start with it. Longer prefixes have few enough completions to be ranked on the spot.
+ */
+
+public class RankedPrefixLists extends RankedSubstringLists
+{
+    /**
+     * Longest prefix that has a list.
+     */
+    public static final int PREFIX_LENGTH = 3;
+
+    /**
+     * @param listSize maximum number of words kept per prefix
+     */
+    public RankedPrefixLists(int listSize)
+    {
+        super(listSize);
+    }
+
+    /**
+     * Returns whether the completions of a prefix can be answered from the lists.
+     * @param prefix the start of a word
+     * @param k number of completions wanted
+     * @return true if prefix has a list and k is no larger than the list size
+     */
+    @Override
+    public boolean covers(String prefix, int k)
+    {
+        return !prefix.isEmpty() && prefix.length() <= PREFIX_LENGTH && k <= getListSize();
+    }
+
+    @Override
+    protected Collection<String> listsOf(String key)
+    {
+        List<String> prefixes = new ArrayList<String>(PREFIX_LENGTH);
+        for(int length = 1; length <= Math.min(PREFIX_LENGTH, key.length()); length++)
+            prefixes.add(key.substring(0, length));
+        return prefixes;
+    }
+
+    @Override
+    protected Collection<String> wordsFor(String prefix, SubstringIndex index)
+    {
+        // every word starting with the prefix also contains it
+        List<String> words = new ArrayList<String>();
+        for(String word : index.wordsContaining(prefix))
+            if(word.startsWith(prefix))
+                words.add(word);
+        return words;
+    }
+}
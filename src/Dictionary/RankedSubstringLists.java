@@ -0,0 +1,229 @@
+package Dictionary;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Precomputed FIND results. For every substring indexed by SubstringIndex (lengths 1 to SubstringIndex.GRAM_LENGTH),
+ * this keeps the highest ranked words containing it (in WordEntry.compareTo() order), up to a fixed list size. A FIND
+ * for such a substring is then a copy of the front of one list.
+ * The lists are kept current incrementally: when a word is added or its frequency goes up, only the lists for its
+ * own substrings are touched. Frequencies only ever increase, so an entry that is not in a list can only enter it
+ * through one of these updates.
+ * Each list has room for twice the list size, so removing a word from it usually just shortens it. Only once a list
+ * that has left words out is down to fewer than list size words is it refilled, by re-ranking every word containing
+ * its substring from the substring index; that takes at least list size removals from a freshly filled list.
+ * Thread safety follows DictionaryLogic's lock: add, remove and clear need the write lock. frequencyIncreased and
+ * top may run concurrently under the read lock, so they lock the individual list they work on.
+ * Subclasses can keep lists for other parts of a word (see RankedPrefixLists) by overriding listsOf, wordsFor and
+ * covers.
+ */
+
+public class RankedSubstringLists
+{
+    private final int listSize;
+    private final int capacity;
+    private final Map<String, Ranking> lists;
+
+    /**
+     * @param listSize maximum number of words kept per substring
+     */
+    public RankedSubstringLists(int listSize)
+    {
+        this.listSize = listSize;
+        this.capacity = 2 * listSize;
+        this.lists = new HashMap<String, Ranking>();
+    }
+
+    public int getListSize()
+    {
+        return listSize;
+    }
+
+    /**
+     * Places a newly added word into the lists of all of its substrings where it ranks high enough.
+     * @param key the dictionary key of the entry
+     * @param entry the entry that was added
+     */
+    public void add(String key, WordEntry entry)
+    {
+        for(String gram : listsOf(key))
+            lists.computeIfAbsent(gram, g -> new Ranking(capacity)).offer(entry, capacity);
+    }
+
+    /**
+     * Moves an entry up in the lists of its substrings after its frequency increased. Lists it wasn't in are
+     * checked too, since it may now outrank their last word.
+     * @param key the dictionary key of the entry
+     * @param entry the entry whose frequency increased
+     */
+    public void frequencyIncreased(String key, WordEntry entry)
+    {
+        for(String gram : listsOf(key))
+        {
+            Ranking ranking = lists.get(gram);
+            if(ranking == null)
+                continue;
+            synchronized(ranking)
+            {
+                List<WordEntry> list = ranking.words;
+                int index = indexOf(list, entry);
+                if(index < 0)
+                {
+                    ranking.offer(entry, capacity);
+                    continue;
+                }
+                // bubble up to its new place; everything else keeps its relative order
+                while(index > 0 && entry.compareTo(list.get(index - 1)) < 0)
+                {
+                    list.set(index, list.get(index - 1));
+                    index--;
+                }
+                list.set(index, entry);
+            }
+        }
+    }
+
+    /**
+     * Takes a removed entry out of the lists of its substrings. A list that left words out and drops below the list
+     * size is refilled by re-ranking the words that still contain the substring, so the removal must already be
+     * reflected in the index and dictionary.
+     * @param key the dictionary key of the removed entry
+     * @param entry the removed entry
+     * @param index substring index with the key already removed
+     * @param lookup maps a dictionary key to its entry
+     */
+    public void remove(String key, WordEntry entry, SubstringIndex index, Function<String, WordEntry> lookup)
+    {
+        for(String gram : listsOf(key))
+        {
+            Ranking ranking = lists.get(gram);
+            if(ranking == null)
+                continue;
+            int position = indexOf(ranking.words, entry);
+            if(position < 0)
+                continue;
+            ranking.words.remove(position);
+            if(!ranking.truncated || ranking.words.size() >= listSize)
+            {
+                if(ranking.words.isEmpty())
+                    lists.remove(gram);
+                continue;
+            }
+
+            // the words left out may now belong in the top list size, and only the index knows them
+            TopKSelector topK = new TopKSelector(capacity);
+            for(String word : wordsFor(gram, index))
+                topK.offer(lookup.apply(word));
+            if(topK.size() == 0)
+            {
+                lists.remove(gram);
+                continue;
+            }
+            ranking.truncated = topK.offered() > capacity;
+            ranking.words.clear();
+            ranking.words.addAll(topK.drainToSortedList());
+        }
+    }
+
+    /**
+     * Drops every list.
+     */
+    public void clear()
+    {
+        lists.clear();
+    }
+
+    /**
+     * Returns whether a query can be answered from the lists.
+     * @param query the FIND keyword
+     * @param k number of words wanted
+     * @return true if query is an indexed substring length and k is no larger than the list size
+     */
+    public boolean covers(String query, int k)
+    {
+        return !query.isEmpty() && query.length() <= SubstringIndex.GRAM_LENGTH && k <= listSize;
+    }
+
+    /**
+     * Returns the top k words containing the query. Only valid if covers(query, k) holds.
+     * @param query the FIND keyword
+     * @param k number of words wanted
+     * @return a new list of at most k entries in descending rank
+     */
+    public List<WordEntry> top(String query, int k)
+    {
+        Ranking ranking = lists.get(query);
+        if(ranking == null)
+            return new ArrayList<WordEntry>();
+        synchronized(ranking)
+        {
+            List<WordEntry> list = ranking.words;
+            return new ArrayList<WordEntry>(list.subList(0, Math.min(k, list.size())));
+        }
+    }
+
+    /**
+     * The lists a word belongs to: here, its indexed substrings.
+     * @param key the dictionary key of a word
+     * @return the names of the lists the word can appear in
+     */
+    protected Collection<String> listsOf(String key)
+    {
+        return SubstringIndex.gramsOf(key);
+    }
+
+    /**
+     * All words that belong to a list, for refilling it after a removal.
+     * @param list the name of the list
+     * @param index substring index over the dictionary keys
+     * @return the keys of every word that belongs to the list
+     */
+    protected Collection<String> wordsFor(String list, SubstringIndex index)
+    {
+        return index.wordsContaining(list);
+    }
+
+    /**
+     * The highest ranked words of one list, best first. Until the list has had to leave a word out it holds every
+     * word containing its substring; after that, it holds the top words only, which is never fewer than list size.
+     * Either way, a word outside the list ranks below all of the words in it.
+     */
+    private static class Ranking
+    {
+        final List<WordEntry> words;
+        boolean truncated;
+
+        Ranking(int capacity)
+        {
+            this.words = new ArrayList<WordEntry>(capacity);
+        }
+
+        // inserts entry at its ranked position, unless words were left out and it doesn't outrank the last word
+        void offer(WordEntry entry, int capacity)
+        {
+            if(capacity == 0)
+                return;
+            int position = words.size();
+            if(truncated && (position == 0 || entry.compareTo(words.get(position - 1)) >= 0))
+                return;
+            while(position > 0 && entry.compareTo(words.get(position - 1)) < 0)
+                position--;
+            words.add(position, entry);
+            if(words.size() > capacity)
+            {
+                words.remove(capacity);
+                truncated = true;
+            }
+        }
+    }
+
+    // entries don't override equals(), so look them up by identity
+    private static int indexOf(List<WordEntry> list, WordEntry entry)
+    {
+        for(int i = 0; i < list.size(); i++)
+            if(list.get(i) == entry)
+                return i;
+        return -1;
+    }
+}
@@ -65,6 +65,7 @@ public class SampleTest {
         // "No Word Matched."
         myDictionary.TextNewWord.setText("NIKO");
         myDictionary.FINDButton.doClick();
+        myDictionary.awaitBackgroundTasks();
         if (myDictionary.TextArea.getText().equals("No Word Matched.")) {
             System.out.println("No Word Matched test passed");
         }
@@ -92,6 +93,7 @@ public class SampleTest {
 
         myDictionary.TextNewWord.setText("ni"); // return niko
         myDictionary.FINDButton.doClick();
+        myDictionary.awaitBackgroundTasks();
 
         if (myDictionary.TextFreqWord1.getText().equals("niko")) {
             System.out.println("FIND Test 1 passed");
@@ -122,18 +124,21 @@ public class SampleTest {
             // freq of "niko" is 3
             myDictionary.TextNewWord.setText("niko");
             myDictionary.FINDButton.doClick();
+            myDictionary.awaitBackgroundTasks();
         }
 
         for (int numi = 0; numi < 4; numi++) {
             // freq of "nIko" is 4
             myDictionary.TextNewWord.setText("nIko");
             myDictionary.FINDButton.doClick();
+            myDictionary.awaitBackgroundTasks();
         }
 
         for (int numi = 0; numi < 5; numi++) {
             // freq of "nIKO" is 5
             myDictionary.TextNewWord.setText("nIKO");
             myDictionary.FINDButton.doClick();
+            myDictionary.awaitBackgroundTasks();
         }
 
         myDictionary.CLEARButton.doClick();
@@ -148,6 +153,7 @@ public class SampleTest {
 
         myDictionary.TextNewWord.setText("n");
         myDictionary.FINDButton.doClick();
+        myDictionary.awaitBackgroundTasks();
 
         if (myDictionary.TextFreqWord1.getText().equals("nIKO")
                 && myDictionary.TextFreqWord2.getText().equals("nIko")
@@ -198,6 +204,7 @@ public class SampleTest {
 
         myDictionary.TextNewWord.setText("NIKO");
         myDictionary.FINDButton.doClick();
+        myDictionary.awaitBackgroundTasks();
 
         if (myDictionary.TextFreqWord1.getText().equals("NIKO")) {
             System.out.println("MODIFY Button Test passed");
@@ -207,27 +214,32 @@ public class SampleTest {
         myDictionary = new Dictionary();
         myDictionary.TextFilePath.setText("./src/input.txt"); // change your path to input.txt
         myDictionary.IMPORTButton.doClick();
+        myDictionary.awaitBackgroundTasks();
 
         for (int numi = 0; numi < 3; numi++) {
             // freq of "niko" is 3
             myDictionary.TextNewWord.setText("niko");
             myDictionary.FINDButton.doClick();
+            myDictionary.awaitBackgroundTasks();
         }
 
         for (int numi = 0; numi < 4; numi++) {
             // freq of "nIko" is 4
             myDictionary.TextNewWord.setText("nIko");
             myDictionary.FINDButton.doClick();
+            myDictionary.awaitBackgroundTasks();
         }
 
         for (int numi = 0; numi < 5; numi++) {
             // freq of "nIKO" is 5
             myDictionary.TextNewWord.setText("nIKO");
             myDictionary.FINDButton.doClick();
+            myDictionary.awaitBackgroundTasks();
         }
 
         myDictionary.TextFilePath.setText("./src/output.txt"); // change your path to output.txt
         myDictionary.EXPORTButton.doClick();
+        myDictionary.awaitBackgroundTasks();
         // compare your output.txt with output_ref.txt
     }
 }
\ No newline at end of file
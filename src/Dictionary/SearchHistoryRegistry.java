@@ -0,0 +1,118 @@
+package Dictionary;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The search histories of many sessions (e.g. the clients of DictionaryServer), created on first use and dropped
+ * once a session has been idle for longer than the idle timeout.
+ * Sessions are looked up in a ConcurrentHashMap, so requests of different sessions never wait for each other.
+ * Idle sessions are swept out by whichever call finds that a sweep is due (at most one sweep per SWEEP_INTERVAL of
+ * the timeout), so the registry needs no thread of its own; a sweep looks at every session, which amortizes to a
+ * small cost per call.
+ */
+
+public class SearchHistoryRegistry<T>
+{
+    /**
+     * Sweeps run at most once per this fraction of the idle timeout.
+     */
+    public static final int SWEEP_INTERVAL = 4;
+
+    /**
+     * A session's history and when it was last used.
+     */
+    private static class Session<T>
+    {
+        final SearchHistoryStack<T> history;
+        // only changed inside the map's compute methods
+        long lastUsed;
+
+        Session(int capacity, long now)
+        {
+            this.history = new SearchHistoryStack<T>(capacity);
+            this.lastUsed = now;
+        }
+    }
+
+    private final int capacity;
+    private final long idleTimeoutNanos;
+    private final ConcurrentHashMap<String, Session<T>> sessions;
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param capacity capacity of each session's history
+     * @param idleTimeoutMillis how long a session may go unused before its history is dropped
+     * @throws IllegalArgumentException if the capacity or timeout is not positive
+     */
+    public SearchHistoryRegistry(int capacity, long idleTimeoutMillis)
+    {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        if(idleTimeoutMillis <= 0)
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeoutMillis);
+        this.capacity = capacity;
+        this.idleTimeoutNanos = idleTimeoutMillis * 1_000_000;
+        this.sessions = new ConcurrentHashMap<String, Session<T>>();
+        this.nextSweep = new AtomicLong(System.nanoTime() + idleTimeoutNanos / SWEEP_INTERVAL);
+    }
+
+    /**
+     * Returns a session's history, creating an empty one if the session is new (or was dropped for being idle), and
+     * marks the session as used.
+     * @param session the session's id
+     * @return its history
+     */
+    public SearchHistoryStack<T> history(String session)
+    {
+        long now = System.nanoTime();
+        sweepIfDue(now);
+        // marked as used atomically with the lookup, so a sweep can't drop it in between
+        Session<T> found = sessions.compute(session, (id, existing) ->
+        {
+            if(existing == null)
+                return new Session<T>(capacity, now);
+            existing.lastUsed = now;
+            return existing;
+        });
+        return found.history;
+    }
+
+    /**
+     * Drops a session's history, e.g. when the session ends.
+     * @param session the session's id
+     */
+    public void remove(String session)
+    {
+        sessions.remove(session);
+    }
+
+    /**
+     * The number of sessions with a history, including idle ones not swept out yet.
+     * @return number of sessions
+     */
+    public int size()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * Drops every session that has been idle for longer than the idle timeout, whether or not a sweep is due.
+     */
+    public void evictIdle()
+    {
+        long now = System.nanoTime();
+        // each session is checked and dropped atomically, so one being looked up at the same time is kept
+        for(String id : sessions.keySet())
+            sessions.computeIfPresent(id, (key, session) ->
+                    (now - session.lastUsed > idleTimeoutNanos) ? null : session);
+    }
+
+    private void sweepIfDue(long now)
+    {
+        long due = nextSweep.get();
+        // only the caller that moves nextSweep on does the sweep
+        if(now - due >= 0 && nextSweep.compareAndSet(due, now + idleTimeoutNanos / SWEEP_INTERVAL))
+            evictIdle();
+    }
+}
@@ -1,28 +1,58 @@
 package Dictionary;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Contains the stack-like data structure behind the search history. The primary field is the List storing
- * each element. Member methods are included to easily add elements / clear the stack.
+ * Contains the stack-like data structure behind the search history. Member methods are included to easily add
+ * elements / clear the stack.
  * Recently pushed elements are at the beginning of the stack (so first indices). If the element being pushed
  * exists, it is moved to the top of the stack.
+ * The elements are kept in a doubly linked list whose links are indices into int arrays, with a map from each
+ * element to its index, so push (including moving an element to the top and dropping the oldest) and pop take
+ * constant time whatever the capacity. Slots freed by dropped elements are reused, so a full stack allocates nothing
+ * but the map's entry for a new element. The arrays grow as the stack fills up, so a stack with a large capacity
+ * costs little until it is used.
+ * All methods are synchronized, so a stack can be shared between threads (e.g. requests of one session, see
+ * SearchHistoryRegistry).
  */
 
 public class SearchHistoryStack<T>
 {
-    private final List<T> stack;
+    private static final int NONE = -1;
+    private static final int INITIAL_SLOTS = 16;
+
     private final int capacity;
+    private final Map<T, Integer> slots;
+
+    // per slot: the element and its neighbours towards the top (newer) and bottom (older)
+    private Object[] values;
+    private int[] newer;
+    private int[] older;
+
+    private int top;
+    private int bottom;
+    private int size;
 
     /**
      * Initializes the search history stack with a given capacity (10 for this program). The capacity is immutable.
      * @param capacity capacity of the stack
+     * @throws IllegalArgumentException if the capacity is not positive
      */
     public SearchHistoryStack(int capacity)
     {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
         this.capacity = capacity;
-        this.stack = new ArrayList<>();
+        this.slots = new HashMap<T, Integer>();
+        int initialSlots = Math.min(capacity, INITIAL_SLOTS);
+        this.values = new Object[initialSlots];
+        this.newer = new int[initialSlots];
+        this.older = new int[initialSlots];
+        this.top = NONE;
+        this.bottom = NONE;
     }
 
     /**
@@ -30,20 +60,35 @@ public class SearchHistoryStack<T>
      * stack. Removes oldest element if stack already full to make room.
      * @param value
      */
-    public void push(T value)
+    public synchronized void push(T value)
     {
-        if(stack.contains(value))
+        Integer existing = slots.get(value);
+        if(existing != null)
         {
-            stack.remove(value);
+            unlink(existing);
+            linkAtTop(existing);
+            return;
         }
 
-        // remove excess element if at max size
-        if(stack.size() == capacity)
+        int slot;
+        if(size == capacity)
         {
-            stack.remove(stack.size() - 1);
+            // reuse the oldest element's slot
+            slot = bottom;
+            @SuppressWarnings("unchecked")
+            T oldest = (T) values[slot];
+            slots.remove(oldest);
+            unlink(slot);
         }
-
-        stack.add(0, value);
+        else
+        {
+            if(size == values.length)
+                grow();
+            slot = size++;
+        }
+        values[slot] = value;
+        slots.put(value, slot);
+        linkAtTop(slot);
     }
 
     /**
@@ -51,35 +96,144 @@ public class SearchHistoryStack<T>
      * @return last element
      * @throws IllegalStateException if the stack is currently empty
      */
-    public T pop() throws IllegalStateException
+    public synchronized T pop() throws IllegalStateException
     {
-        if(stack.isEmpty())
+        if(size == 0)
             throw new IllegalStateException("Cannot pop empty stack");
-        return stack.remove(stack.size() - 1);
+        int slot = bottom;
+        @SuppressWarnings("unchecked")
+        T oldest = (T) values[slot];
+        slots.remove(oldest);
+        unlink(slot);
+
+        // keep the used slots at 0 to size - 1 by moving the last slot into the freed one
+        int last = --size;
+        if(slot != last)
+        {
+            values[slot] = values[last];
+            newer[slot] = newer[last];
+            older[slot] = older[last];
+            if(newer[slot] == NONE)
+                top = slot;
+            else
+                older[newer[slot]] = slot;
+            if(older[slot] == NONE)
+                bottom = slot;
+            else
+                newer[older[slot]] = slot;
+            @SuppressWarnings("unchecked")
+            T moved = (T) values[slot];
+            slots.put(moved, slot);
+        }
+        values[last] = null;
+        return oldest;
     }
 
     /**
      * Determines if the stack is occupied or empty.
      * @return true if the stack is empty
      */
-    public boolean isEmpty()
+    public synchronized boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Removes every element.
+     */
+    public synchronized void clear()
     {
-        return stack.isEmpty();
+        slots.clear();
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        top = NONE;
+        bottom = NONE;
     }
 
     /**
-     * Returns a safe array containing all the elements in the stack. This array is safe due to the implementation
-     * of List.toArray() - a new array is allocated so modifications to the array is not reflected in the list
-     * here and vice versa.
+     * Returns a safe array containing all the elements in the stack, most recent first. A new array is allocated, so
+     * modifications to the array are not reflected in the stack and vice versa.
      * @return stack in the form of an array
      */
-    public T[] stackToArray(Class<T> type)
+    public synchronized T[] stackToArray(Class<T> type)
     {
         @SuppressWarnings("unchecked")
-        T[] typeArray = (T[]) java.lang.reflect.Array.newInstance(type, stack.size());
-        return (T[]) stack.toArray(typeArray);
+        T[] typeArray = (T[]) java.lang.reflect.Array.newInstance(type, size);
+        copyInto(typeArray);
+        return typeArray;
     }
 
+    /**
+     * Copies the elements, most recent first, into an array supplied by the caller, so that a caller taking
+     * snapshots repeatedly can reuse one array and allocate nothing. Elements that don't fit are left out.
+     * @param target array to copy into
+     * @return number of elements copied: the smaller of size() and the array's length
+     */
+    public synchronized int copyInto(T[] target)
+    {
+        int count = 0;
+        for(int slot = top; slot != NONE && count < target.length; slot = older[slot])
+        {
+            @SuppressWarnings("unchecked")
+            T value = (T) values[slot];
+            target[count++] = value;
+        }
+        return count;
+    }
+
+    /**
+     * Hands every element, most recent first, to an action, without allocating. The stack is locked meanwhile, so
+     * the action sees a consistent snapshot but must not use the stack itself.
+     * @param action called with each element
+     */
+    public synchronized void forEach(Consumer<? super T> action)
+    {
+        for(int slot = top; slot != NONE; slot = older[slot])
+        {
+            @SuppressWarnings("unchecked")
+            T value = (T) values[slot];
+            action.accept(value);
+        }
+    }
+
+    private void unlink(int slot)
+    {
+        if(newer[slot] == NONE)
+            top = older[slot];
+        else
+            older[newer[slot]] = older[slot];
+        if(older[slot] == NONE)
+            bottom = newer[slot];
+        else
+            newer[older[slot]] = newer[slot];
+    }
 
+    private void linkAtTop(int slot)
+    {
+        newer[slot] = NONE;
+        older[slot] = top;
+        if(top == NONE)
+            bottom = slot;
+        else
+            newer[top] = slot;
+        top = slot;
+    }
 
+    private void grow()
+    {
+        int length = (int) Math.min(capacity, 2L * values.length);
+        values = Arrays.copyOf(values, length);
+        newer = Arrays.copyOf(newer, length);
+        older = Arrays.copyOf(older, length);
+    }
 }
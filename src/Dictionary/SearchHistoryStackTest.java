@@ -0,0 +1,111 @@
+package Dictionary;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Randomized test for SearchHistoryStack against the ArrayList it replaced (kept below as ListStack). Through random
+ * pushes of repeated and new elements, pops and clears, both must hold the same elements in the same order at every
+ * step, as seen through stackToArray, copyInto and forEach.
+ */
+public class SearchHistoryStackTest
+{
+    private static final int[] CAPACITIES = {1, 2, 3, 10, 17, 40, 100};
+    private static final int OPERATIONS = 50000;
+
+    /**
+     * The search history as it used to be: a list with the most recent element first.
+     */
+    private static class ListStack<T>
+    {
+        private final List<T> stack = new ArrayList<T>();
+        private final int capacity;
+
+        ListStack(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        void push(T value)
+        {
+            if(stack.contains(value))
+                stack.remove(value);
+            if(stack.size() == capacity)
+                stack.remove(stack.size() - 1);
+            stack.add(0, value);
+        }
+
+        T pop()
+        {
+            if(stack.isEmpty())
+                throw new IllegalStateException("Cannot pop empty stack");
+            return stack.remove(stack.size() - 1);
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        boolean passed = true;
+        Random random = new Random(42);
+        for(int capacity : CAPACITIES)
+            passed &= sameAsList(capacity, random);
+        System.out.println("Search history stack test " + (passed ? "passed" : "failed"));
+    }
+
+    private static boolean sameAsList(int capacity, Random random)
+    {
+        SearchHistoryStack<String> stack = new SearchHistoryStack<String>(capacity);
+        ListStack<String> expected = new ListStack<String>(capacity);
+        String[] copy = new String[capacity];
+        List<String> each = new ArrayList<String>();
+        for(int i = 0; i < OPERATIONS; i++)
+        {
+            int operation = random.nextInt(100);
+            String result = "", expectedResult = "";
+            if(operation < 85)
+            {
+                // about half of the pushes are of elements already in the stack
+                String value = "w" + random.nextInt(2 * capacity + 1);
+                stack.push(value);
+                expected.push(value);
+            }
+            else if(operation < 98)
+            {
+                result = pop(stack::pop);
+                expectedResult = pop(expected::pop);
+            }
+            else
+            {
+                stack.clear();
+                expected.stack.clear();
+            }
+
+            int copied = stack.copyInto(copy);
+            each.clear();
+            stack.forEach(each::add);
+            if(!result.equals(expectedResult) || stack.size() != expected.stack.size()
+                    || stack.isEmpty() != expected.stack.isEmpty()
+                    || !Arrays.asList(stack.stackToArray(String.class)).equals(expected.stack)
+                    || !Arrays.asList(copy).subList(0, copied).equals(expected.stack) || !each.equals(expected.stack))
+            {
+                System.out.println("Capacity " + capacity + ": operation " + i + " left " + each + " (popped " +
+                        result + ") instead of " + expected.stack + " (popped " + expectedResult + ")");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the element popped, or the error popping threw
+    private static String pop(Supplier<String> pop)
+    {
+        try
+        {
+            return pop.get();
+        }
+        catch(IllegalStateException empty)
+        {
+            return empty.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package Dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A dictionary split into several independent DictionaryLogic shards, each holding the words whose key hashes to it
+ * with its own map, indexes and lock. Operations on one word (findWord, addWord, removeWord) only touch the word's
+ * shard, so changes to different shards never wait for each other. A substring search runs on every shard at once,
+ * on the common ForkJoinPool, and merges the top k of each shard into the overall top k (see WordEntry.compareTo).
+ * Only the words of the overall top k count as searched.
+ * What is given up for this is atomicity across shards:
+ * - A substring search sees each shard as of a slightly different moment, so a change made while it runs may show
+ *   up in some shards' part of the ranking and not in others.
+ * - modifyMeaning to a name in another shard removes the word from one shard and then adds it to the other, so
+ *   there is a brief moment where neither name is found (as with DictionaryLogic.modifyMeaning and findWord).
+ * - An import checks the whole file before any shard is touched, but then replaces the shards one after the other.
+ * The shards share one popularity decay, so their popularity scores are comparable. Journals aren't supported.
+ */
+
+public class ShardedDictionary
+{
+    private final DictionaryLogic[] shards;
+    private final boolean caseInsensitive;
+
+    /**
+     * Creates an empty dictionary of the given number of shards, each with the given optional features enabled.
+     * @param shardCount number of shards, e.g. the number of cores
+     * @param config the features to enable in every shard
+     * @throws IllegalArgumentException if the number of shards is not positive
+     */
+    public ShardedDictionary(int shardCount, DictionaryConfig config)
+    {
+        if(shardCount <= 0)
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        PopularityDecay popularityDecay = (config.getPopularityHalfLife() > 0) ?
+                new PopularityDecay(config.getPopularityHalfLife()) : null;
+        this.shards = new DictionaryLogic[shardCount];
+        for(int i = 0; i < shardCount; i++)
+            shards[i] = new DictionaryLogic(config, popularityDecay);
+        this.caseInsensitive = config.isCaseInsensitive();
+    }
+
+    public int getShardCount()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Adds a unique word to its shard.
+     * @param newWord word to be added
+     * @param meaning the meaning of the word
+     * @throws WordDuplicatedError if the word is already present in the dictionary
+     */
+    public void addWord(String newWord, String meaning) throws WordDuplicatedError
+    {
+        shardOf(newWord).addWord(newWord, meaning);
+    }
+
+    /**
+     * Looks a word up in its shard only.
+     * @param searchWord word to find in the dictionary
+     * @return the matched WordEntry in the dictionary or null if not found
+     */
+    public WordEntry findWord(String searchWord)
+    {
+        return shardOf(searchWord).findWord(searchWord);
+    }
+
+    /**
+     * Returns the top 3 (or 2 or 1) words containing searchWord, across all shards.
+     * @param searchWord the keyword to search for in the dictionary
+     * @return List of WordEntries that are the most frequently searched words similar to searchWord.
+     */
+    public List<WordEntry> findWordByFreq(String searchWord)
+    {
+        return findWordByFreq(searchWord, 3);
+    }
+
+    /**
+     * Returns the top k words containing searchWord across all shards, ranked as by DictionaryLogic.findWordByFreq.
+     * Every shard ranks its own top k in parallel (the calling thread takes one shard itself), and the overall top
+     * k is picked from those, so no shard hands back more than k words. Only the returned words have their search
+     * frequency incremented.
+     * @param searchWord the keyword to search for in the dictionary
+     * @param k maximum number of words to return
+     * @return List of at most k WordEntries that are the most frequently searched words similar to searchWord.
+     */
+    public List<WordEntry> findWordByFreq(String searchWord, int k)
+    {
+        List<ForkJoinTask<List<WordEntry>>> forked = new ArrayList<ForkJoinTask<List<WordEntry>>>(shards.length - 1);
+        for(int i = 1; i < shards.length; i++)
+        {
+            DictionaryLogic shard = shards[i];
+            forked.add(ForkJoinPool.commonPool().submit(() -> shard.rankWords(searchWord, k)));
+        }
+
+        TopKSelector topK = new TopKSelector(k);
+        for(WordEntry entry : shards[0].rankWords(searchWord, k))
+            topK.offer(entry);
+        for(ForkJoinTask<List<WordEntry>> task : forked)
+            for(WordEntry entry : task.join())
+                topK.offer(entry);
+
+        List<WordEntry> result = topK.drainToSortedList();
+        for(WordEntry entry : result)
+            shardOf(entry.getWordName()).countSearch(entry);
+        return result;
+    }
+
+    /**
+     * Renames an existing word without changing its meaning or search frequency. Within one shard this is
+     * DictionaryLogic.modifyMeaning; otherwise the word is taken out of its shard and put into the new name's one.
+     * @param replacementWord new word name
+     * @param oldWord old word name to replace
+     * @throws WordNotFoundError if the supplied old word is not found.
+     * @throws InvalidWordError if the supplied replacement word is not in valid syntax
+     */
+    public void modifyMeaning(String replacementWord, String oldWord) throws WordNotFoundError, InvalidWordError
+    {
+        DictionaryLogic from = shardOf(oldWord);
+        DictionaryLogic to = shardOf(replacementWord);
+        if(from == to)
+        {
+            from.modifyMeaning(replacementWord, oldWord);
+            return;
+        }
+        // checked first, since the old word is gone once it is taken
+        if(!WordEntry.isValidWord(replacementWord))
+            throw new InvalidWordError(replacementWord);
+        to.putRenamed(replacementWord, from.takeWord(oldWord));
+    }
+
+    /**
+     * Removes the given word from its shard.
+     * @param toRemove word to remove
+     * @throws WordNotFoundError if the word is not found in the dictionary
+     */
+    public void removeWord(String toRemove) throws WordNotFoundError
+    {
+        shardOf(toRemove).removeWord(toRemove);
+    }
+
+    /**
+     * Empties every shard, one after the other.
+     */
+    public void removeAllWords()
+    {
+        for(DictionaryLogic shard : shards)
+            shard.removeAllWords();
+    }
+
+    /**
+     * Imports a file in the format of DictionaryLogic.importFileToDict, parsed on every core (see BulkImporter). The
+     * whole file is checked before any shard is touched, so a bad file leaves the dictionary as it was; the shards
+     * then build their new contents in parallel and each replaces its own.
+     * @param filePath the file path of the input text file
+     * @param progress called with the percentage (0 to 100) of the file parsed so far, possibly from several threads
+     * @throws FileNotFoundError if the file cannot be found for any reason
+     * @throws WordDuplicatedError if a word appears twice in the file
+     * @throws InvalidWordError if a word in the file is in invalid syntax
+     */
+    public void bulkImportFileToDict(String filePath, IntConsumer progress)
+            throws FileNotFoundError, WordDuplicatedError, InvalidWordError
+    {
+        BulkImporter.Records records = new BulkImporter().read(filePath, progress);
+
+        // a word and its duplicate have the same key, so they land in the same shard's part
+        List<Map<String, WordEntry>> parts = new ArrayList<Map<String, WordEntry>>(shards.length);
+        for(int i = 0; i < shards.length; i++)
+            parts.add(new ConcurrentHashMap<String, WordEntry>(records.size() / shards.length + 1));
+        for(int i = 0; i < records.size(); i++)
+        {
+            if(records.getInvalidWord() != null && records.line(i) > records.getInvalidLine())
+                break;
+            WordEntry entry = records.entry(i);
+            String key = keyOf(entry.getWordName());
+            if(parts.get(indexOf(key)).putIfAbsent(key, entry) != null)
+                throw new WordDuplicatedError(entry.getWordName(), records.line(i));
+        }
+        if(records.getInvalidWord() != null)
+            throw new InvalidWordError(records.getInvalidWord(), records.getInvalidLine());
+
+        IntStream.range(0, shards.length).parallel().forEach(i -> shards[i].replaceWith(parts.get(i)));
+    }
+
+    public void exportFileFromDict(String filePath) throws FileNotFoundError
+    {
+        exportFileFromDict(filePath, percent -> {});
+    }
+
+    /**
+     * Writes every entry of every shard to a text file in descending order of search frequency, as
+     * DictionaryLogic.exportFileFromDict does. All shards are read locked for the whole export, so it is a
+     * consistent picture of the dictionary; searches carry on meanwhile, changes wait.
+     * @param filePath the file path of the output text file
+     * @param progress called with the percentage (0 to 100) of entries written so far, each time it changes
+     * @throws FileNotFoundError if the file cannot be written for any reason
+     */
+    public void exportFileFromDict(String filePath, IntConsumer progress) throws FileNotFoundError
+    {
+        ExportWriter writer = new ExportWriter(filePath, progress);
+        // always locked in shard order; a change only ever holds one shard's lock, so this can't deadlock
+        int locked = 0;
+        try
+        {
+            for(DictionaryLogic shard : shards)
+            {
+                shard.readLock().lock();
+                locked++;
+            }
+            for(DictionaryLogic shard : shards)
+                for(WordEntry entry : shard.entries())
+                    writer.add(entry);
+            writer.finish();
+        }
+        finally
+        {
+            while(locked > 0)
+                shards[--locked].readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the FIND hits buffered in every shard (see DictionaryLogic.flushSearches).
+     */
+    public void flushSearches()
+    {
+        for(DictionaryLogic shard : shards)
+            shard.flushSearches();
+    }
+
+    private DictionaryLogic shardOf(String word)
+    {
+        return shards[indexOf(keyOf(word))];
+    }
+
+    // spreads the high bits of the hash into the low ones, which pick the shard
+    private int indexOf(String key)
+    {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    // DictionaryLogic's own keys, so a word and its differently cased spellings share a shard
+    private String keyOf(String word)
+    {
+        return DictionaryLogic.keyOf(word, caseInsensitive);
+    }
+}
@@ -0,0 +1,110 @@
+package Dictionary;
+
+import java.util.*;
+
+/**
+ * Substring index over the keys of the dictionary. Every distinct substring of length 1 to GRAM_LENGTH (the n-grams)
+ * of a word is mapped to a posting list containing all words with that substring. A query no longer than
+ * GRAM_LENGTH is answered directly by its posting list. A longer query is answered by scanning only the posting list
+ * of its rarest n-gram (every match must contain all of the query's n-grams, so it must be in that list) and
+ * verifying each candidate with String.contains. Either way, the cost is about the size of the result rather than
+ * the size of the dictionary.
+ */
+
+public class SubstringIndex
+{
+    /**
+     * Longest n-gram that is indexed. Queries of this length or shorter are exact posting list lookups.
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    private final Map<String, Set<String>> postings;
+
+    public SubstringIndex()
+    {
+        this.postings = new HashMap<String, Set<String>>();
+    }
+
+    /**
+     * Indexes all n-grams of the given word.
+     * @param word word to index
+     */
+    public void add(String word)
+    {
+        for(String gram : gramsOf(word))
+            postings.computeIfAbsent(gram, g -> new HashSet<String>()).add(word);
+    }
+
+    /**
+     * Removes the given word from every posting list it appears in. Posting lists that become empty are dropped so
+     * that the index does not keep growing as words come and go.
+     * @param word word to remove from the index
+     */
+    public void remove(String word)
+    {
+        for(String gram : gramsOf(word))
+        {
+            Set<String> list = postings.get(gram);
+            if(list == null)
+                continue;
+            list.remove(word);
+            if(list.isEmpty())
+                postings.remove(gram);
+        }
+    }
+
+    /**
+     * Removes every word from the index.
+     */
+    public void clear()
+    {
+        postings.clear();
+    }
+
+    /**
+     * Returns every indexed word that contains the query. The empty query is not handled here since it matches the
+     * whole dictionary, which the caller already has.
+     * @param query non-empty substring to search for
+     * @return the words containing query (read-only, possibly empty)
+     */
+    public Collection<String> wordsContaining(String query)
+    {
+        if(query.length() <= GRAM_LENGTH)
+        {
+            Set<String> list = postings.get(query);
+            return (list == null) ? Collections.<String>emptySet() : Collections.unmodifiableSet(list);
+        }
+
+        // pick the n-gram of the query with the shortest posting list; if any n-gram is missing, nothing matches
+        Set<String> rarest = null;
+        for(int i = 0; i + GRAM_LENGTH <= query.length(); i++)
+        {
+            Set<String> list = postings.get(query.substring(i, i + GRAM_LENGTH));
+            if(list == null)
+                return Collections.<String>emptyList();
+            if(rarest == null || list.size() < rarest.size())
+                rarest = list;
+        }
+
+        List<String> matches = new ArrayList<String>();
+        for(String word : rarest)
+            if(word.contains(query))
+                matches.add(word);
+        return matches;
+    }
+
+    /**
+     * Returns the distinct n-grams (lengths 1 to GRAM_LENGTH) of a word. Duplicates are removed so that a word with a
+     * repeated substring (e.g. "banana") is only touched once per posting list.
+     * @param word the word to split
+     * @return set of n-grams of word
+     */
+    static Set<String> gramsOf(String word)
+    {
+        Set<String> grams = new HashSet<String>();
+        for(int len = 1; len <= GRAM_LENGTH; len++)
+            for(int i = 0; i + len <= word.length(); i++)
+                grams.add(word.substring(i, i + len));
+        return grams;
+    }
+}
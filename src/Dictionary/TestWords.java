@@ -0,0 +1,26 @@
+package Dictionary;
+
+import java.util.Random;
+
+/**
+ * Random words for the tests. They are short and made of few letters, so that words repeat and contain each other
+ * often, which is where adding, removing and ranking words collide.
+ */
+
+final class TestWords
+{
+    private TestWords() {}
+
+    /**
+     * @param random source of the letters
+     * @return a word of 1 to 5 letters from a to d
+     */
+    static String randomWord(Random random)
+    {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for(int i = 0; i < length; i++)
+            word.append((char) ('a' + random.nextInt(4)));
+        return word.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package Dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the k highest ranked WordEntries offered to it, where rank is the ordering of WordEntry.compareTo() (higher
+ * frequency first, then alphabetical). Internally this is a bounded binary heap whose root is the lowest ranked entry
+ * kept so far, so each offer costs O(log k) and selecting from n candidates costs O(n log k) instead of sorting all of
+ * them. No objects are allocated while offering.
+ */
+
+public class TopKSelector
+{
+    private final int k;
+    private WordEntry[] heap;
+    private int size;
+    private int offered;
+
+    /**
+     * Creates an empty selector.
+     * @param k the maximum number of entries to keep
+     * @throws IllegalArgumentException if k is negative
+     */
+    public TopKSelector(int k)
+    {
+        if(k < 0)
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        this.k = k;
+        // grown on demand, so that a large k (e.g. "everything") costs nothing up front
+        this.heap = new WordEntry[Math.min(k, 16)];
+        this.size = 0;
+    }
+
+    /**
+     * Offers a candidate. It is kept if fewer than k entries are held or if it outranks the lowest ranked one.
+     * @param entry candidate entry
+     */
+    public void offer(WordEntry entry)
+    {
+        offered++;
+        if(size < k)
+        {
+            if(size == heap.length)
+                heap = Arrays.copyOf(heap, (int) Math.min(k, 2L * heap.length));
+            heap[size] = entry;
+            siftUp(size++);
+        }
+        else if(size > 0 && entry.compareTo(heap[0]) < 0)
+        {
+            heap[0] = entry;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Number of entries currently held (at most k).
+     * @return number of entries held
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Number of entries offered so far, kept or not, including those offered to selectors merged into this one.
+     * @return number of entries offered
+     */
+    public int offered()
+    {
+        return offered;
+    }
+
+    /**
+     * Offers every entry another selector holds, so that selectors filled in parallel over parts of the candidates
+     * can be combined into the top k of all of them. The other selector is left as it was.
+     * @param other a selector over other candidates
+     */
+    public void merge(TopKSelector other)
+    {
+        int before = offered;
+        for(int i = 0; i < other.size; i++)
+            offer(other.heap[i]);
+        offered = before + other.offered;
+    }
+
+    /**
+     * Returns the held entries from highest to lowest rank. The selector is left empty afterwards.
+     * @return list of at most k entries in descending rank
+     */
+    public List<WordEntry> drainToSortedList()
+    {
+        // repeatedly pull the lowest ranked entry off the root and fill the array from the back
+        WordEntry[] sorted = new WordEntry[size];
+        for(int i = size - 1; i >= 0; i--)
+        {
+            sorted[i] = heap[0];
+            heap[0] = heap[--size];
+            heap[size] = null;
+            siftDown(0);
+        }
+        List<WordEntry> result = new ArrayList<WordEntry>(sorted.length);
+        for(WordEntry entry : sorted)
+            result.add(entry);
+        return result;
+    }
+
+    // the heap is ordered so that a parent never outranks its children (the root is the worst entry kept)
+    private void siftUp(int index)
+    {
+        WordEntry entry = heap[index];
+        while(index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+            if(heap[parent].compareTo(entry) >= 0)
+                break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = entry;
+    }
+
+    private void siftDown(int index)
+    {
+        if(size == 0)
+            return;
+        WordEntry entry = heap[index];
+        int half = size >>> 1;
+        while(index < half)
+        {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            // move towards the child that ranks lower (greater by compareTo)
+            if(right < size && heap[right].compareTo(heap[child]) > 0)
+                child = right;
+            if(entry.compareTo(heap[child]) >= 0)
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+}
@@ -6,4 +6,9 @@ package Dictionary;
 public class WordDuplicatedError extends RuntimeException
 {
     public WordDuplicatedError(String word) { super("The word " + word + " already exists in the dictionary."); }
+
+    public WordDuplicatedError(String word, long line)
+    {
+        super("The word " + word + " on line " + line + " already exists in the dictionary.");
+    }
 }
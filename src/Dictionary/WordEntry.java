@@ -1,6 +1,9 @@
 package Dictionary;
 
 import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class to contain a word's information (name, meaning, frequency) and methods to manipulate these variables.
@@ -9,8 +12,43 @@ import java.io.PrintWriter;
 public class WordEntry implements Comparable<WordEntry>
 {
     private final String wordName;
-    private final String wordMeaning;
-    private int frequencySearched;
+
+    /*
+     * The meaning is either a String on the heap (wordMeaning), or UTF-8 bytes in a MeaningArena, in which case
+     * meaningArena is set and the address and length of the bytes are kept here instead (guarded by the arena's lock,
+     * since compaction moves them).
+     */
+    private volatile String wordMeaning;
+    private volatile MeaningArena meaningArena;
+    private long meaningAddress;
+    private int meaningLength;
+    /*
+     * Searches can come from many threads at once, so the count is a LongAdder: increments are striped across cells
+     * under contention and never lost, and reading the count sums the cells.
+     */
+    private final LongAdder frequencySearched;
+    /*
+     * Optional time-decayed popularity (see PopularityDecay): the logarithm of the word's forward-decayed search
+     * count, stored as the bits of a double so it can be updated with compare-and-set, which loses no concurrent
+     * search. It stays at negative infinity (no popularity) unless a DictionaryLogic with decay adds to it, and
+     * compareTo then falls back to the all-time frequency.
+     */
+    private volatile long popularityBits = NO_POPULARITY;
+
+    private static final long NO_POPULARITY = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+    private static final VarHandle POPULARITY;
+
+    static
+    {
+        try
+        {
+            POPULARITY = MethodHandles.lookup().findVarHandle(WordEntry.class, "popularityBits", long.class);
+        }
+        catch(ReflectiveOperationException except)
+        {
+            throw new ExceptionInInitializerError(except);
+        }
+    }
 
     /**
      * Construction of a new word for the dictionary.
@@ -24,7 +62,7 @@ public class WordEntry implements Comparable<WordEntry>
             throw new InvalidWordError(name);
         this.wordName = name;
         this.wordMeaning = meaning;
-        this.frequencySearched = 0;
+        this.frequencySearched = new LongAdder();
     }
 
     /**
@@ -36,16 +74,94 @@ public class WordEntry implements Comparable<WordEntry>
      */
     public WordEntry(String name, String meaning, int frequency) throws InvalidWordError
     {
-        if(!StringValidator(name))
+        this(name, meaning, frequency, true);
+    }
+
+    // the constructors and factories all end up here; validate is only false for names known to be valid
+    private WordEntry(String name, String meaning, int frequency, boolean validate) throws InvalidWordError
+    {
+        if(validate && !StringValidator(name))
             throw new InvalidWordError(name);
         this.wordName = name;
         this.wordMeaning = meaning;
-        this.frequencySearched = frequency;
+        this.frequencySearched = new LongAdder();
+        this.frequencySearched.add(frequency);
+    }
+
+    /**
+     * Construction of a word whose name is already known to be valid, e.g. because it was checked just before or
+     * comes out of a checksummed snapshot of a dictionary, so it isn't checked again.
+     * @param name the literal word, which must be valid
+     * @param meaning meaning of the word
+     * @param frequency frequency the word has been searched
+     * @return the new entry
+     */
+    static WordEntry trusted(String name, String meaning, int frequency)
+    {
+        return new WordEntry(name, meaning, frequency, false);
+    }
+
+    /**
+     * Construction of a new word whose meaning is kept off the heap in the given arena.
+     * @param name the literal word
+     * @param meaning meaning of the word, copied into the arena
+     * @param frequency frequency the word has been searched
+     * @param arena where to store the meaning
+     * @return the new entry
+     * @throws InvalidWordError if the name is invalid
+     */
+    public static WordEntry offHeap(String name, String meaning, int frequency, MeaningArena arena)
+            throws InvalidWordError
+    {
+        WordEntry entry = new WordEntry(name, null, frequency);
+        arena.store(meaning, entry);
+        return entry;
+    }
+
+    /**
+     * Construction of a word kept off the heap whose name is already known to be valid, as for trusted.
+     * @param name the literal word, which must be valid
+     * @param meaning meaning of the word, copied into the arena
+     * @param frequency frequency the word has been searched
+     * @param arena where to store the meaning
+     * @return the new entry
+     */
+    static WordEntry trustedOffHeap(String name, String meaning, int frequency, MeaningArena arena)
+    {
+        WordEntry entry = trusted(name, null, frequency);
+        arena.store(meaning, entry);
+        return entry;
+    }
+
+    /**
+     * Creates an entry for the same meaning, search frequency and popularity under a different name. An off-heap
+     * meaning is shared rather than copied.
+     * @param newName the new literal word
+     * @return the renamed entry
+     * @throws InvalidWordError if the new name is invalid
+     */
+    public WordEntry renamed(String newName) throws InvalidWordError
+    {
+        WordEntry entry = new WordEntry(newName, wordMeaning, getFrequencySearched());
+        entry.popularityBits = popularityBits;
+        entry.meaningAddress = meaningAddress;
+        entry.meaningLength = meaningLength;
+        entry.meaningArena = meaningArena;
+        return entry;
     }
 
     public void incrementFrequency()
     {
-        frequencySearched++;
+        frequencySearched.increment();
+    }
+
+    /**
+     * Counts several searches at once, e.g. the hits buffered by a FrequencyRecorder.
+     * @param times number of searches
+     */
+    public void incrementFrequency(int times)
+    {
+        frequencySearched.add(times);
     }
 
     public String getWordName()
@@ -55,30 +171,62 @@ public class WordEntry implements Comparable<WordEntry>
 
     public String getWordMeaning()
     {
-        return wordMeaning;
+        MeaningArena arena = meaningArena;
+        return (arena == null) ? wordMeaning : arena.read(this);
     }
 
     public int getFrequencySearched()
     {
-        return frequencySearched;
+        return frequencySearched.intValue();
+    }
+
+    /**
+     * The time-decayed popularity score, as a logarithm (see PopularityDecay). Only comparable with scores of the
+     * same PopularityDecay.
+     * @return the score, or negative infinity if the word has none
+     */
+    public double getPopularity()
+    {
+        return Double.longBitsToDouble(popularityBits);
+    }
+
+    /**
+     * Adds to the time-decayed popularity score. Safe to call from many threads at once.
+     * @param weight logarithm of the amount to add, from PopularityDecay.searchWeight
+     */
+    public void addPopularity(double weight)
+    {
+        long current;
+        long updated;
+        do
+        {
+            current = popularityBits;
+            updated = Double.doubleToRawLongBits(PopularityDecay.add(Double.longBitsToDouble(current), weight));
+        }
+        while(!POPULARITY.compareAndSet(this, current, updated));
     }
 
     public void writeWordEntryToStream(PrintWriter out)
     {
-        out.print(this.wordName + "\n" + this.frequencySearched + "\n" + this.wordMeaning);
+        out.print(this.wordName + "\n" + this.getFrequencySearched() + "\n" + this.getWordMeaning());
     }
 
     /**
      * Returns a negative integer, zero, or a positive integer if this WordEntry is less than, equal to,
-     * or greater than the specified object. A WordEntry is greater than another if its frequency searched is greater
-     * than the other word entry. If the frequencies are equal, comparison is made with respect to ascending
-     * alphabetical order. This is useful for quickly sorting a list of WordEntry using the stream API.
+     * or greater than the specified object. A WordEntry is greater than another if its popularity score (when
+     * decay is on, see PopularityDecay) is greater, otherwise if its frequency searched is greater than the other
+     * word entry. If the frequencies are equal, comparison is made with respect to ascending alphabetical order.
+     * This is useful for quickly sorting a list of WordEntry using the stream API.
      * @param other the object to be compared.
      * @return positive integer if this WordEntry has a greater frequency than other WordEntry or if the other word
      * lexicographically follows this word (if the frequencies are the same)
      */
     public int compareTo(WordEntry other)
     {
+        // without decay both scores are negative infinity, which compare equal
+        int comparePopularity = Double.compare(other.getPopularity(), this.getPopularity());
+        if(comparePopularity != 0)
+            return comparePopularity;
         int compareFreq = Integer.compare(other.getFrequencySearched(), this.getFrequencySearched());
         if(compareFreq != 0)
             return compareFreq;
@@ -86,9 +234,39 @@ public class WordEntry implements Comparable<WordEntry>
         return this.getWordName().compareTo(other.getWordName());
     }
 
+    // bookkeeping for MeaningArena, which calls these with its lock held
+
+    MeaningArena getMeaningArena()
+    {
+        return meaningArena;
+    }
+
+    long getMeaningAddress()
+    {
+        return meaningAddress;
+    }
+
+    int getMeaningLength()
+    {
+        return meaningLength;
+    }
+
+    void setMeaningLocation(MeaningArena arena, long address, int length)
+    {
+        this.meaningAddress = address;
+        this.meaningLength = length;
+        this.meaningArena = arena;
+    }
+
+    void setMeaningOnHeap(String meaning)
+    {
+        this.wordMeaning = meaning;
+        this.meaningArena = null;
+    }
+
     public String toString()
     {
-        return (this.wordName + " : " + this.frequencySearched);
+        return (this.wordName + " : " + this.getFrequencySearched());
     }
 
     /**
@@ -98,7 +276,26 @@ public class WordEntry implements Comparable<WordEntry>
      */
     private boolean StringValidator(String label)
     {
-        return ((label != null) && label.matches("[a-zA-Z]+"));
+        return isValidWord(label);
+    }
+
+    /**
+     * Checks if the string is a valid word, i.e. a non-empty string made only of the English alphabet. This is the
+     * same check as matching [a-zA-Z]+, but without compiling and running a regex for every word.
+     * @param label the string to check
+     * @return true if label is only made of the English alphabet (a valid string)
+     */
+    public static boolean isValidWord(String label)
+    {
+        if(label == null || label.isEmpty())
+            return false;
+        for(int i = 0; i < label.length(); i++)
+        {
+            char c = label.charAt(i);
+            if(!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')))
+                return false;
+        }
+        return true;
     }
 
 